@@ -0,0 +1,63 @@
+package com.flapkap.challenge.config;
+
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.repositories.UserRepository;
+import com.flapkap.challenge.services.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the default admin on the first start, a restart (or another node) finds it and does nothing.
+ * With startup.admin.async the password hashing and the insert run off the startup path.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdminBootstrap implements ApplicationRunner {
+    private final UserService userService;
+    private final UserRepository userRepository;
+
+    @Value("${default.admin.username}")
+    private String defaultAdminUsername;
+    @Value("${default.admin.password}")
+    private String defaultAdminPassword;
+    @Value("${startup.admin.async:false}")
+    private boolean async;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (async) {
+            Thread thread = new Thread(this::createDefaultAdmin, "admin-bootstrap");
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            createDefaultAdmin();
+        }
+    }
+
+    private void createDefaultAdmin() {
+        if (userRepository.findOneByUsername(defaultAdminUsername).isPresent()) {
+            log.info("Default admin {} already exists", defaultAdminUsername);
+            return;
+        }
+
+        try {
+            User admin = User.builder()
+                    .username(defaultAdminUsername)
+                    .password(defaultAdminPassword)
+                    .role(UserRole.ROLE_ADMIN)
+                    .build();
+            userService.createUser(admin);
+            log.info("Default admin {} has been created", defaultAdminUsername);
+        } catch (BadRequestException e) {
+            // another node created it in the meantime
+            log.info("Default admin {} not created: {}", defaultAdminUsername, e.getMessage());
+        }
+    }
+}
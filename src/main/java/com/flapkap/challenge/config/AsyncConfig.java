@@ -0,0 +1,47 @@
+package com.flapkap.challenge.config;
+
+import com.flapkap.challenge.services.sales.SalesOverflow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * Spring Boot backs off its own application task executor as soon as another executor is declared,
+     * so it is declared here the same way, from the spring.task.execution settings. It runs the plain
+     * async methods and the deferred JPA bootstrap of the fast-start profile.
+     */
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * A single thread records the sales of a node, the rollup updates themselves are atomic.
+     * When the queue is full the sale is recorded by the purchasing thread after it released the product lock,
+     * see {@link SalesOverflow}.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor salesExecutor(@Value("${sales.queueCapacity:100000}") int queueCapacity,
+                                                SalesOverflow salesOverflow) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("sales-");
+        executor.setRejectedExecutionHandler(salesOverflow);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -0,0 +1,94 @@
+package com.flapkap.challenge.config;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.flapkap.challenge.dto.ResponseDTO;
+import com.flapkap.challenge.dto.TransactionDTO;
+import com.flapkap.challenge.dto.product.ProductDTO;
+import com.flapkap.challenge.dto.user.UserDTO;
+import com.flapkap.challenge.entities.enums.UserRole;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Compact binary wire format for the kiosks, negotiated with "Accept: application/cbor".
+ * The CBOR schema maps the DTO fields to one or two letter keys and drops the human readable
+ * message of {@link ResponseDTO}, the JSON representation is left untouched.
+ *
+ * ResponseDTO: ok (success), d (data)
+ * ProductDTO: i (id), n (productName), c (cost), a (amountAvailable)
+ * TransactionDTO: t (total), ch (change), co (change coins), p (product), a (amount)
+ * UserDTO: i (id), u (username), d (deposit), r (role), ca (createdAt), ma (lastModifiedAt)
+ */
+@Configuration
+public class CborConfig {
+
+    /**
+     * Declared as a bean so Boot's HttpMessageConverters puts it in place of the default CBOR converter,
+     * which comes first and would otherwise answer with the full field names
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        return new MappingJackson2CborHttpMessageConverter(objectMapperBuilder
+                .factory(new CBORFactory())
+                .mixIn(ResponseDTO.class, ResponseSchema.class)
+                .mixIn(ProductDTO.class, ProductSchema.class)
+                .mixIn(TransactionDTO.class, TransactionSchema.class)
+                .mixIn(UserDTO.class, UserSchema.class)
+                .build());
+    }
+
+    abstract static class ResponseSchema {
+        @JsonIgnore
+        private String message;
+        @JsonProperty("ok")
+        private boolean success;
+        @JsonProperty("d")
+        private Object data;
+    }
+
+    abstract static class ProductSchema {
+        @JsonProperty("i")
+        private Long id;
+        @JsonProperty("n")
+        private String productName;
+        @JsonProperty("c")
+        private int cost;
+        @JsonProperty("a")
+        private int amountAvailable;
+    }
+
+    abstract static class TransactionSchema {
+        @JsonProperty("t")
+        private int total;
+        @JsonProperty("ch")
+        private int change;
+        @JsonProperty("co")
+        private List<Integer> coins;
+        @JsonProperty("p")
+        private ProductDTO product;
+        @JsonProperty("a")
+        private int amount;
+    }
+
+    abstract static class UserSchema {
+        @JsonProperty("i")
+        private Long id;
+        @JsonProperty("u")
+        private String username;
+        @JsonProperty("d")
+        private int deposit;
+        @JsonProperty("r")
+        private UserRole role;
+        @JsonProperty("ca")
+        private LocalDateTime createdAt;
+        @JsonProperty("ma")
+        private LocalDateTime lastModifiedAt;
+    }
+}
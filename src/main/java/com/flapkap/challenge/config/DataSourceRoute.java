@@ -0,0 +1,6 @@
+package com.flapkap.challenge.config;
+
+public enum DataSourceRoute {
+    PRIMARY,
+    REPLICA
+}
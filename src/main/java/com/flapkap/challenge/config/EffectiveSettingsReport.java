@@ -0,0 +1,58 @@
+package com.flapkap.challenge.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Logs the persistence and pool settings the application actually runs with,
+ * so a misconfigured profile shows up in the first lines of the log instead of under load.
+ * The pools are the Hikari beans behind the data source, the replica routing wraps them in proxies.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EffectiveSettingsReport {
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private final Environment environment;
+    private final DataSource dataSource;
+    private final ObjectProvider<HikariDataSource> pools;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        log.info("Active profiles: {}", Arrays.toString(environment.getActiveProfiles()));
+        log.info("Open session in view: {}", environment.getProperty("spring.jpa.open-in-view", "true"));
+        log.info("JDBC batch size: {}", property("spring.jpa.properties.hibernate.jdbc.batch_size"));
+        log.info("Ordered inserts: {}, ordered updates: {}",
+                property("spring.jpa.properties.hibernate.order_inserts"),
+                property("spring.jpa.properties.hibernate.order_updates"));
+
+        List<HikariDataSource> hikariPools = pools.orderedStream().collect(Collectors.toList());
+        for (HikariDataSource hikari : hikariPools) {
+            // a pool that hasn't started yet still holds -1 for the sizes it will default on start
+            int maximumSize = hikari.getMaximumPoolSize() < 1 ? DEFAULT_POOL_SIZE : hikari.getMaximumPoolSize();
+            int minimumIdle = hikari.getMinimumIdle() < 0 || hikari.getMinimumIdle() > maximumSize ? maximumSize : hikari.getMinimumIdle();
+            log.info("Connection pool {}: maximum size {}, minimum idle {}, connection timeout {} ms",
+                    hikari.getPoolName(), maximumSize, minimumIdle, hikari.getConnectionTimeout());
+            log.info("Prepared statement caching: {}", hikari.getDataSourceProperties().getProperty("cachePrepStmts", "off"));
+        }
+        if (hikariPools.isEmpty()) {
+            log.info("Data source: {}", dataSource.getClass().getName());
+        }
+    }
+
+    private String property(String key) {
+        return environment.getProperty(key, "default");
+    }
+}
@@ -0,0 +1,42 @@
+package com.flapkap.challenge.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+/**
+ * Sizes the connection pool from the number of cores when the high-throughput profile is active.
+ * An explicit spring.datasource.hikari.maximum-pool-size always wins.
+ */
+@Configuration
+@Profile("high-throughput")
+@Slf4j
+public class HighThroughputPoolConfig implements BeanPostProcessor, EnvironmentAware {
+    private static final String MAXIMUM_POOL_SIZE = "spring.datasource.hikari.maximum-pool-size";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof HikariDataSource && !environment.containsProperty(MAXIMUM_POOL_SIZE)) {
+            HikariDataSource dataSource = (HikariDataSource) bean;
+            int connectionsPerCore = environment.getProperty("datasource.pool.connectionsPerCore", Integer.class, 2);
+            int poolSize = Runtime.getRuntime().availableProcessors() * connectionsPerCore + 1;
+
+            log.info("Sizing pool {} to {} connections", dataSource.getPoolName(), poolSize);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMinimumIdle(poolSize);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,89 @@
+package com.flapkap.challenge.config;
+
+import com.flapkap.challenge.services.admission.AdaptiveConcurrencyLimiter;
+import com.flapkap.challenge.services.admission.AdmissionPriority;
+import com.flapkap.challenge.services.admission.RequestPriority;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Sheds requests with 503 when the {@link AdaptiveConcurrencyLimiter} doesn't admit them,
+ * before the controller touches the service layer or the connection pool.
+ * The priority of a request is the {@link AdmissionPriority} of its controller method.
+ *
+ * The interceptor runs after the {@link com.flapkap.challenge.security.RateLimitFilter} of the security chain:
+ * a request only reaches the adaptive limit once it got a permit of its endpoint class concurrency limit,
+ * and it holds that permit until the filter returns, shed or not. So the critical requests, always admitted
+ * here, are still bounded by the purchase concurrency limit, and a shed request answers 503 after a 429 was
+ * ruled out. A request holds its adaptive slot from the handler until its completion, or until an async
+ * request (a stream) is handed over to another thread.
+ */
+@Configuration
+@ConditionalOnProperty(value = "loadshedding.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LoadSheddingConfig implements WebMvcConfigurer, AsyncHandlerInterceptor {
+    private static final String STARTED_AT = LoadSheddingConfig.class.getName() + ".STARTED_AT";
+    private static final byte[] SERVICE_UNAVAILABLE = ("{\"status\":503,\"error\":\"Service Unavailable\","
+            + "\"message\":\"The server is busy, please try again later\"}").getBytes(StandardCharsets.UTF_8);
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // the completion of an async request is dispatched again, it was admitted on the first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+
+        AdmissionPriority admissionPriority = ((HandlerMethod) handler).getMethodAnnotation(AdmissionPriority.class);
+        RequestPriority priority = admissionPriority != null ? admissionPriority.value() : RequestPriority.NORMAL;
+        if (!limiter.tryAcquire(priority)) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(SERVICE_UNAVAILABLE.length);
+            response.getOutputStream().write(SERVICE_UNAVAILABLE);
+            return false;
+        }
+
+        request.setAttribute(STARTED_AT, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // streams are long lived, they don't hold a slot (nor a connection) while they are open
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        Object startedAt = request.getAttribute(STARTED_AT);
+        if (startedAt != null) {
+            request.removeAttribute(STARTED_AT);
+            limiter.release(System.nanoTime() - (Long) startedAt);
+        }
+    }
+}
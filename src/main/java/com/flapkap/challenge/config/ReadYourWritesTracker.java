@@ -0,0 +1,74 @@
+package com.flapkap.challenge.config;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which users wrote recently, so their reads stay on the primary
+ * until the replica had the time to catch up with their own writes.
+ * The writes are kept in the memory of this node only: a user who writes through one node
+ * and reads through another one within the window still reads from the replica there.
+ */
+public class ReadYourWritesTracker {
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final long stickyWindowNanos;
+
+    public ReadYourWritesTracker(long stickyWindowMs) {
+        this.stickyWindowNanos = stickyWindowMs * 1_000_000L;
+    }
+
+    /**
+     * Record a write of the current authenticated user
+     */
+    public void markWrite() {
+        String username = currentUsername();
+        if (username != null) {
+            lastWrites.put(username, System.nanoTime());
+        }
+    }
+
+    /**
+     * @return true if the current authenticated user wrote within the sticky window
+     */
+    public boolean wroteRecently() {
+        String username = currentUsername();
+        if (username == null) {
+            return false;
+        }
+
+        Long lastWrite = lastWrites.get(username);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite > stickyWindowNanos) {
+            lastWrites.remove(username, lastWrite);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Forget the writes older than the sticky window, the users who never read again would stay forever otherwise
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.stickyWindowMs:2000}")
+    public void expireWrites() {
+        long now = System.nanoTime();
+        lastWrites.values().removeIf(lastWrite -> now - lastWrite > stickyWindowNanos);
+    }
+
+    public int size() {
+        return lastWrites.size();
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
@@ -0,0 +1,68 @@
+package com.flapkap.challenge.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Splits the data source into a primary and a read replica pool when datasource.replica.url is set.
+ * The routing data source is wrapped in a {@link LazyConnectionDataSourceProxy} so the physical
+ * connection is only fetched once the read-only flag of the transaction is known.
+ */
+@Configuration
+@ConditionalOnProperty("datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:}") String username,
+                                              @Value("${datasource.replica.password:}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setReadOnly(true);
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(@Value("${datasource.replica.stickyWindowMs:2000}") long stickyWindowMs) {
+        return new ReadYourWritesTracker(stickyWindowMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") HikariDataSource replicaDataSource,
+                                 ReadYourWritesTracker readYourWritesTracker) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DataSourceRoute.PRIMARY, primaryDataSource);
+        targets.put(DataSourceRoute.REPLICA, replicaDataSource);
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(readYourWritesTracker);
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,38 @@
+package com.flapkap.challenge.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends connections of read-only transactions to the replica and everything else to the primary.
+ * Users whose read-write transaction committed recently keep reading from the primary, see {@link ReadYourWritesTracker}.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    private final ReadYourWritesTracker tracker;
+
+    public ReplicaRoutingDataSource(ReadYourWritesTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            // a fetch outside of a transaction (a lazy load after it ended) reads from the primary, it wrote nothing
+            return DataSourceRoute.PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            // the replica lags behind the commit, a rolled back transaction has nothing to catch up with
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        tracker.markWrite();
+                    }
+                });
+            }
+            return DataSourceRoute.PRIMARY;
+        }
+        return tracker.wroteRecently() ? DataSourceRoute.PRIMARY : DataSourceRoute.REPLICA;
+    }
+}
@@ -0,0 +1,63 @@
+package com.flapkap.challenge.config;
+
+import com.flapkap.challenge.services.compression.CompressedResponse;
+import com.flapkap.challenge.services.compression.GzipResponseWrapper;
+import com.flapkap.challenge.services.compression.ResponseCompressionFilter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Gzip compression of the endpoints marked with {@link CompressedResponse}, each with its own minimum size.
+ * The container compression is off: it would compress every endpoint alike, including the streams
+ * and the catalog pages that are already compressed in the page cache.
+ */
+@Configuration
+@ConditionalOnProperty(value = "compression.enabled", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ResponseCompressionConfig implements WebMvcConfigurer, HandlerInterceptor {
+    private final Environment environment;
+
+    @Bean
+    public ResponseCompressionFilter responseCompressionFilter() {
+        return new ResponseCompressionFilter();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this).addPathPatterns("/api/**");
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the compression of an async response was decided on the first dispatch
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+
+        CompressedResponse compressedResponse = ((HandlerMethod) handler).getMethodAnnotation(CompressedResponse.class);
+        if (compressedResponse == null) {
+            return true;
+        }
+
+        // caches must keep the compressed and the plain variant apart, whether this one got compressed or not
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        GzipResponseWrapper wrapper = WebUtils.getNativeResponse(response, GzipResponseWrapper.class);
+        if (wrapper != null) {
+            wrapper.compressFrom(Integer.parseInt(environment.resolvePlaceholders(compressedResponse.minSize()).trim()));
+        }
+        return true;
+    }
+}
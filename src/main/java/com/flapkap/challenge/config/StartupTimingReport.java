@@ -0,0 +1,76 @@
+package com.flapkap.challenge.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Logs how long each startup phase took, the slowest beans, and the time from the JVM launch to ready.
+ * The phases are only recorded when the application is started with a {@link BufferingApplicationStartup},
+ * as ChallengeApplication does. A warning is logged when the startup is slower than startup.targetMs.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupTimingReport {
+    private static final String BEAN_INSTANTIATION = "spring.beans.instantiate";
+
+    @Value("${startup.targetMs:5000}")
+    private long targetMs;
+    @Value("${startup.report.slowestBeans:10}")
+    private int slowestBeans;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void report(ApplicationReadyEvent event) {
+        ApplicationStartup applicationStartup = event.getApplicationContext().getApplicationStartup();
+        if (applicationStartup instanceof BufferingApplicationStartup) {
+            List<StartupTimeline.TimelineEvent> events =
+                    ((BufferingApplicationStartup) applicationStartup).drainBufferedTimeline().getEvents();
+
+            // the phases are the steps without parent, in the order they ran
+            Map<String, Duration> phases = new LinkedHashMap<>();
+            events.stream()
+                    .filter(step -> step.getStartupStep().getParentId() == null)
+                    .forEach(step -> phases.merge(step.getStartupStep().getName(), step.getDuration(), Duration::plus));
+            phases.forEach((name, duration) -> log.info("Startup phase {}: {} ms", name, duration.toMillis()));
+
+            events.stream()
+                    .filter(step -> BEAN_INSTANTIATION.equals(step.getStartupStep().getName()))
+                    .sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+                    .limit(slowestBeans)
+                    .forEach(step -> log.info("Startup bean {}: {} ms", beanName(step.getStartupStep()), step.getDuration().toMillis()));
+        }
+
+        long startupMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("Started in {} ms since the JVM launch, {} ms in the application context",
+                startupMs, event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : -1);
+        if (startupMs > targetMs) {
+            log.warn("Startup took {} ms, over the target of {} ms", startupMs, targetMs);
+        }
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return StreamSupport.stream(step.getTags().spliterator(), false).map(StartupStep.Tag::getValue).collect(Collectors.joining(","));
+    }
+}
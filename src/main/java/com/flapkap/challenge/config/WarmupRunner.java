@@ -0,0 +1,215 @@
+package com.flapkap.challenge.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.dto.product.ProductDTO;
+import com.flapkap.challenge.dto.user.LoginRequestDTO;
+import com.flapkap.challenge.dto.user.UserDTO;
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.repositories.SaleRepository;
+import com.flapkap.challenge.repositories.SalesRollupRepository;
+import com.flapkap.challenge.security.JWTUtils;
+import com.flapkap.challenge.services.product.ProductService;
+import com.flapkap.challenge.services.user.UserDetailsServiceImpl;
+import com.flapkap.challenge.services.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the purchase path until the JIT has compiled it, before the application reports ready.
+ * Login, token validation, listing, deposit, buy and reset run against a warm-up seller, buyer and product,
+ * each in its own transaction as they run for a kiosk, so the commits and the after-commit listeners are warmed up too.
+ * The warm-up data is deleted afterwards, the node doesn't report ready before, so no kiosk of this node sees it.
+ * The database is shared though: while a node warms up, the nodes already serving list the warm-up product,
+ * each restock and the deletion move the catalog tag of every node, and the journal keeps the warm-up purchases.
+ * The catalog is then requested over HTTP to warm up the servlet container, the filter chain and Jackson.
+ * With warmup.exitAfter the application stops once warmed up, which is the training run of the CDS archive.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@RequiredArgsConstructor
+@Slf4j
+public class WarmupRunner implements ApplicationRunner {
+    private static final String PASSWORD = "warmup-password";
+    private static final int MAX_STOCK = 20;
+
+    private final UserService userService;
+    private final ProductService productService;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final JWTUtils jwtUtils;
+    private final SaleRepository saleRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    @Qualifier("salesExecutor")
+    private final ThreadPoolTaskExecutor salesExecutor;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Environment environment;
+    private final ConfigurableApplicationContext applicationContext;
+
+    @Value("${warmup.enabled:false}")
+    private boolean enabled;
+    @Value("${warmup.iterations:2000}")
+    private int iterations;
+    @Value("${warmup.logins:5}")
+    private int logins;
+    @Value("${warmup.httpRequests:2000}")
+    private int httpRequests;
+    @Value("${warmup.maxDurationMs:30000}")
+    private long maxDurationMs;
+    @Value("${warmup.exitAfter:false}")
+    private boolean exitAfter;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+        try {
+            warmUpServices(deadline);
+            warmUpHttp(deadline);
+        } catch (Exception e) {
+            // a failed warm-up only costs the first requests their latency
+            log.warn("Warm-up failed: {}", e.getMessage(), e);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        log.info("Warm-up done in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if (exitAfter) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+
+    private void warmUpServices(long deadline) throws Exception {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        List<Long> userIds = new ArrayList<>();
+        Authentication seller = null;
+        ProductDTO product = null;
+        try {
+            seller = signUp("wus" + suffix, UserRole.ROLE_SELLER, userIds);
+            Authentication buyer = signUp("wub" + suffix, UserRole.ROLE_BUYER, userIds);
+
+            SecurityContextHolder.getContext().setAuthentication(seller);
+            product = productService.createProduct(Product.builder()
+                    .productName("warmup-" + suffix)
+                    .cost(5)
+                    .amountAvailable(MAX_STOCK)
+                    .build());
+
+            for (int i = 0; i < iterations && System.nanoTime() < deadline; i++) {
+                // the token validation and user lookup of AuthTokenFilter
+                String token = jwtUtils.generateJwtToken(buyer);
+                if (jwtUtils.validateJwtToken(token)) {
+                    userDetailsService.loadUserByUsername(jwtUtils.getUserNameFromJwtToken(token));
+                }
+
+                SecurityContextHolder.getContext().setAuthentication(buyer);
+                objectMapper.writeValueAsBytes(productService.getAllProducts(PageRequest.of(0, 20)));
+                userService.depositMoney(5);
+                objectMapper.writeValueAsBytes(productService.buyProduct(product.getId(), 1));
+                userService.resetDeposit();
+
+                if ((i + 1) % MAX_STOCK == 0) {
+                    SecurityContextHolder.getContext().setAuthentication(seller);
+                    productService.updateProduct(product.getId(), Product.builder()
+                            .productName(product.getProductName())
+                            .cost(product.getCost())
+                            .amountAvailable(MAX_STOCK)
+                            .build());
+                }
+            }
+        } finally {
+            removeWarmupData(seller, product, userIds, deadline);
+        }
+    }
+
+    /**
+     * Delete the warm-up data through the services, so the journal, the caches and the stock stream see the deletions
+     * as they saw the purchases, then delete the sales of the warm-up seller once they are recorded
+     */
+    private void removeWarmupData(Authentication seller, ProductDTO product, List<Long> userIds, long deadline)
+            throws InterruptedException {
+        if (product != null) {
+            SecurityContextHolder.getContext().setAuthentication(seller);
+            productService.deleteById(product.getId());
+        }
+
+        if (!userIds.isEmpty()) {
+            // the sales are recorded after the commit on the sales executor, wait for the last ones
+            long salesDeadline = Math.max(deadline, System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            ThreadPoolExecutor executor = salesExecutor.getThreadPoolExecutor();
+            while ((executor.getActiveCount() > 0 || !executor.getQueue().isEmpty()) && System.nanoTime() < salesDeadline) {
+                Thread.sleep(10);
+            }
+
+            Long sellerId = userIds.get(0);
+            transactionTemplate.executeWithoutResult(status -> {
+                saleRepository.deleteBySellerId(sellerId);
+                salesRollupRepository.deleteBySellerId(sellerId);
+            });
+        }
+
+        userIds.forEach(userService::deleteUser);
+    }
+
+    private Authentication signUp(String username, UserRole role, List<Long> userIds) {
+        UserDTO user = userService.createUser(User.builder()
+                .username(username)
+                .password(PASSWORD)
+                .role(role)
+                .build());
+        userIds.add(user.getId());
+
+        LoginRequestDTO login = new LoginRequestDTO();
+        login.setUsername(username);
+        login.setPassword(PASSWORD);
+        // the password hashing dominates a login, a few rounds are enough to compile the rest of it
+        for (int i = 0; i < logins; i++) {
+            userService.loginUser(login);
+        }
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private void warmUpHttp(long deadline) throws Exception {
+        String port = environment.getProperty("local.server.port");
+        if (port == null) {
+            return;
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        HttpRequest listing = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/products/")).GET().build();
+        for (int i = 0; i < httpRequests && System.nanoTime() < deadline; i++) {
+            client.send(listing, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.flapkap.challenge.controllers;
+
+import com.flapkap.challenge.dto.ResponseDTO;
+import com.flapkap.challenge.dto.TransactionDTO;
+import com.flapkap.challenge.dto.machine.MachineDTO;
+import com.flapkap.challenge.dto.machine.MachineSlotDTO;
+import com.flapkap.challenge.dto.machine.RestockDTO;
+import com.flapkap.challenge.dto.machine.RestockResultDTO;
+import com.flapkap.challenge.entities.Machine;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.services.admission.AdmissionPriority;
+import com.flapkap.challenge.services.admission.RequestPriority;
+import com.flapkap.challenge.services.compression.CompressedResponse;
+import com.flapkap.challenge.services.machine.MachineService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/machines")
+@RequiredArgsConstructor
+@Slf4j
+public class MachineController {
+
+    private final MachineService machineService;
+
+    /**
+     * Get all machines
+     *
+     * @param page the pagination information
+     * @return the list of machines {@link MachineDTO} with pagination
+     * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse
+    @GetMapping("/")
+    public ResponseEntity<?> getAllMachines(Pageable page) {
+        log.info("API ---> (/api/v1/machines) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".getAllMachines()");
+        return ResponseEntity.ok(machineService.getAllMachines(page));
+    }
+
+    /**
+     * Create a new machine
+     *
+     * @param machine the machine information to be created
+     * @return the created machine {@link MachineDTO}
+     * @throws BadRequestException if the machine already exists
+     * */
+    @PostMapping("/")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<?> createMachine(@RequestBody Machine machine) throws BadRequestException {
+        log.info("API ---> (/api/v1/machines) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".createMachine()");
+        log.info("Request body: {}", machine);
+        MachineDTO machineDTO = machineService.createMachine(machine);
+        URI uri = URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().path("/api/v1/machines/" + machineDTO.getId() + "/slots").toUriString());
+        return ResponseEntity.created(uri).body(
+                ResponseDTO.builder()
+                        .message("Machine has been created successfully")
+                        .data(machineDTO)
+                        .build()
+        );
+    }
+
+    /**
+     * Get the slots of a machine and the products they hold
+     *
+     * @param machineId the machine id
+     * @return the list of slots {@link MachineSlotDTO}
+     * @throws EntityNotFoundException if the machine doesn't exist
+     * */
+    @GetMapping("/{machineId}/slots")
+    public ResponseEntity<?> getSlots(@PathVariable Long machineId) throws EntityNotFoundException {
+        log.info("API ---> (/api/v1/machines/{machineId}/slots) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".getSlots()");
+        return ResponseEntity.ok(machineService.getSlots(machineId));
+    }
+
+    /**
+     * Put a product in a slot of a machine
+     *
+     * @param machineId the machine id
+     * @param slotCode the slot code, e.g. A1
+     * @param productId the id of a product of the current seller
+     * @param capacity the number of items the slot holds when full (optional)
+     * @return the slot {@link MachineSlotDTO}
+     * @throws EntityNotFoundException if the machine or the product doesn't exist
+     * @throws BadRequestException if the capacity is not positive
+     * */
+    @PutMapping("/{machineId}/slots/{slotCode}")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<?> assignSlot(@PathVariable Long machineId, @PathVariable String slotCode, @RequestParam Long productId,
+                                        @RequestParam(required = false) Integer capacity) throws EntityNotFoundException, BadRequestException {
+        log.info("API ---> (/api/v1/machines/{machineId}/slots/{slotCode}) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".assignSlot()");
+        return ResponseEntity.ok(
+                ResponseDTO.builder()
+                        .message("Slot has been updated successfully")
+                        .data(machineService.assignSlot(machineId, slotCode, productId, capacity))
+                        .build()
+        );
+    }
+
+    /**
+     * Restock the slots of a machine in one call.
+     * The stock changes are applied in a single batch and only touch the slot quantities.
+     *
+     * @param machineId the machine id
+     * @param changes the stock change of each slot {@link RestockDTO}
+     * @return the number of updated slots and the skipped ones {@link RestockResultDTO}
+     * @throws EntityNotFoundException if the machine doesn't exist
+     * */
+    @PostMapping("/{machineId}/restock")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<?> restock(@PathVariable Long machineId, @RequestBody List<RestockDTO> changes) throws EntityNotFoundException {
+        log.info("API ---> (/api/v1/machines/{machineId}/restock) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".restock()");
+        return ResponseEntity.ok(
+                ResponseDTO.builder()
+                        .message("Machine has been restocked successfully")
+                        .data(machineService.restock(machineId, changes))
+                        .build()
+        );
+    }
+
+    /**
+     * Deposit a coin at a machine
+     *
+     * @param machineId the machine id
+     * @param amount the coin, one of the coins accepted by the machine
+     * @throws EntityNotFoundException if the machine doesn't exist
+     * @throws BadRequestException if the amount is not a coin of the machine
+     * */
+    @AdmissionPriority(RequestPriority.CRITICAL)
+    @PutMapping("/{machineId}/deposit/{amount}")
+    @PreAuthorize("hasRole('ROLE_BUYER')")
+    public ResponseEntity<?> depositMoney(@PathVariable Long machineId, @PathVariable Integer amount) throws EntityNotFoundException, BadRequestException {
+        log.info("API ---> (/api/v1/machines/{machineId}/deposit/{amount}) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".depositMoney()");
+        machineService.depositMoney(machineId, amount);
+        return ResponseEntity.ok(
+                ResponseDTO.builder()
+                        .message("Money has been deposited successfully")
+                        .build()
+        );
+    }
+
+    /**
+     * Buy the product of a slot
+     *
+     * @param machineId the machine id
+     * @param slotCode the slot code
+     * @param amount the quantity to buy
+     * @return the transaction details {@link TransactionDTO}
+     * @throws EntityNotFoundException if the machine or the slot doesn't exist
+     * @throws BadRequestException if the slot is empty or the product amount is less than the amount to buy
+     * */
+    @AdmissionPriority(RequestPriority.CRITICAL)
+    @PostMapping("/{machineId}/slots/{slotCode}/buy")
+    @PreAuthorize("hasRole('ROLE_BUYER')")
+    public ResponseEntity<?> buyProduct(@PathVariable Long machineId, @PathVariable String slotCode, @RequestParam Integer amount) throws EntityNotFoundException, BadRequestException {
+        log.info("API ---> (/api/v1/machines/{machineId}/slots/{slotCode}/buy) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".buyProduct()");
+        return ResponseEntity.ok(
+                ResponseDTO.builder()
+                        .message("Product has been bought successfully")
+                        .data(machineService.buyProduct(machineId, slotCode, amount))
+                        .build()
+        );
+    }
+}
@@ -3,18 +3,37 @@ package com.flapkap.challenge.controllers;
 import com.flapkap.challenge.dto.ResponseDTO;
 import com.flapkap.challenge.dto.TransactionDTO;
 import com.flapkap.challenge.dto.product.ProductDTO;
+import com.flapkap.challenge.dto.sales.SalesRollupDTO;
 import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.services.admission.AdmissionPriority;
+import com.flapkap.challenge.services.admission.RequestPriority;
+import com.flapkap.challenge.services.catalog.CatalogPage;
+import com.flapkap.challenge.services.catalog.CatalogPageCache;
+import com.flapkap.challenge.services.catalog.CatalogVersion;
+import com.flapkap.challenge.services.compression.CompressedResponse;
+import com.flapkap.challenge.services.compression.GzipResponseWrapper;
 import com.flapkap.challenge.services.product.ProductService;
+import com.flapkap.challenge.services.sales.SalesService;
+import com.flapkap.challenge.services.stock.StockStreamService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.WebUtils;
 
+import javax.servlet.http.HttpServletResponse;
 import java.net.URI;
 
 @RestController
@@ -24,17 +43,65 @@ import java.net.URI;
 public class ProductController {
 
     private final ProductService productService;
+    private final SalesService salesService;
+    private final StockStreamService stockStreamService;
+    private final CatalogVersion catalogVersion;
+    private final CatalogPageCache catalogPageCache;
+
+    @Value("${buyers.unscopedEndpoints.enabled:true}")
+    private boolean unscopedEndpoints;
 
     /**
-     * Get all products
+     * Get all products.
+     * The response carries the catalog version as weak entity tag, a request with a matching
+     * If-None-Match header is answered with 304 without loading any product. Purchases don't change the tag,
+     * the stock is followed on the stock stream.
+     * Otherwise the page is written from the pre-serialized (and gzip compressed when accepted) page cache.
      *
      * @return the list of products {@link ProductDTO} with pagination
      * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse
     @GetMapping("/")
-    public ResponseEntity<?> getAllProducts(Pageable page) {
+    public ResponseEntity<?> getAllProducts(Pageable page, WebRequest request, HttpServletResponse response) {
         log.info("API ---> (/api/v1/products) has been called.");
         log.info("Method Location: {}", this.getClass().getName() + ".getAllProducts()");
-        return ResponseEntity.ok(productService.getAllProducts(page));
+
+        // the tag is read before the products, a change committed in between only causes a later revalidation
+        boolean cbor = acceptsCbor(request);
+        String etag = catalogVersion.etag();
+        if (request.checkNotModified(variant(etag, cbor))) {
+            return null;
+        }
+
+        // the page cache holds JSON only, the compact binary format is serialized per request
+        if (cbor) {
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(productService.getAllProducts(page));
+        }
+
+        // the compression adds Vary: Accept-Encoding, the compressed page is only written when it is on
+        CatalogPage catalogPage = catalogPageCache.get(page, etag, () -> productService.getAllProducts(page));
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT);
+        if (WebUtils.getNativeResponse(response, GzipResponseWrapper.class) != null) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(catalogPage.getGzip());
+        }
+        return builder.body(catalogPage.getJson());
+    }
+
+    /**
+     * Stream the stock changes of the catalog as server-sent events instead of polling the product list.
+     * Changes are coalesced, a subscriber receives at most one "stock" event per interval.
+     *
+     * @param sellerId only stream the products of this seller (optional)
+     * @return the stream of stock deltas {@link com.flapkap.challenge.dto.product.StockDeltaDTO}
+     * */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStock(@RequestParam(required = false) Long sellerId) {
+        log.info("API ---> (/api/v1/products/stream) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".streamStock()");
+        return stockStreamService.subscribe(sellerId);
     }
 
     /**
@@ -45,10 +112,15 @@ public class ProductController {
      * @throws EntityNotFoundException if the product doesn't exist
      * */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable Long id) throws EntityNotFoundException {
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest request) throws EntityNotFoundException {
         log.info("API ---> (/api/v1/products/{id}) has been called.");
         log.info("Method Location: {}", this.getClass().getName() + ".getProductById()");
-        return ResponseEntity.ok(productService.getProductById(id));
+
+        // the tag comes from the version column only, the product itself is loaded on a mismatch
+        if (request.checkNotModified(variant(productService.getProductEtag(id), acceptsCbor(request)))) {
+            return null;
+        }
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(productService.getProductById(id));
     }
 
     /**
@@ -56,6 +128,8 @@ public class ProductController {
      *
      * @return the list of products {@link ProductDTO} with pagination
      * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse
     @GetMapping("/my-products")
     @PreAuthorize("hasRole('ROLE_SELLER')")
     public ResponseEntity<?> getMyProducts(Pageable page) {
@@ -64,6 +138,23 @@ public class ProductController {
         return ResponseEntity.ok(productService.getMyProducts(page));
     }
 
+    /**
+     * Find the sales of my products, aggregated per product in minute, hour or day buckets
+     *
+     * @param granularity the bucket size, HOUR by default
+     * @param page the pagination information
+     * @return the list of sales rollups {@link SalesRollupDTO} with pagination, the most recent bucket first
+     * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse
+    @GetMapping("/my-products/sales")
+    @PreAuthorize("hasRole('ROLE_SELLER')")
+    public ResponseEntity<?> getMySales(@RequestParam(defaultValue = "HOUR") RollupGranularity granularity, Pageable page) {
+        log.info("API ---> (/api/v1/products/my-products/sales) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".getMySales()");
+        return ResponseEntity.ok(salesService.getMySales(granularity, page));
+    }
+
     /**
      * Create a new product
      *
@@ -131,24 +222,45 @@ public class ProductController {
     }
 
     /**
-     * Buy a product by id and product amount
+     * Buy a product by id and product amount.
+     * Deprecated: the purchase takes the seller stock of the product with the default coins, outside of any machine.
+     * Kiosks buy from a slot through {@link MachineController#buyProduct}, the endpoint is off with buyers.unscopedEndpoints.enabled=false.
      *
      * @param id the product id
      * @param amount the quantity to buy
      * @return the transaction details {@link TransactionDTO}
-     * @throws EntityNotFoundException if the product doesn't exist
+     * @throws EntityNotFoundException if the product doesn't exist or the endpoint is off
      * @throws BadRequestException if the product amount is less than the amount to buy
      * */
+    @Deprecated
+    @AdmissionPriority(RequestPriority.CRITICAL)
     @PostMapping("/{id}/buy")
     @PreAuthorize("hasRole('ROLE_BUYER')")
     public ResponseEntity<?> buyProduct(@PathVariable Long id, @RequestParam Integer amount) throws EntityNotFoundException, BadRequestException {
         log.info("API ---> (/api/v1/products/{id}/buy) has been called.");
         log.info("Method Location: {}", this.getClass().getName() + ".buyProduct()");
-        return ResponseEntity.ok(
-                ResponseDTO.builder()
+        if (!unscopedEndpoints) {
+            throw Rejections.MACHINE_REQUIRED;
+        }
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header(HttpHeaders.LINK, "</api/v1/machines/>; rel=\"successor-version\"")
+                .body(ResponseDTO.builder()
                         .message("Product has been bought successfully")
                         .data(productService.buyProduct(id, amount))
                         .build()
         );
     }
+
+    private static boolean acceptsCbor(WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return accept != null && accept.contains(MediaType.APPLICATION_CBOR_VALUE);
+    }
+
+    /**
+     * An entity tag identifies one representation, the binary variant gets its own tag
+     */
+    private static String variant(String etag, boolean cbor) {
+        return cbor ? etag.substring(0, etag.length() - 1) + "-cbor\"" : etag;
+    }
 }
@@ -1,20 +1,35 @@
 package com.flapkap.challenge.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.flapkap.challenge.dto.ResponseDTO;
 import com.flapkap.challenge.dto.user.UserDTO;
 import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.services.admission.AdmissionPriority;
+import com.flapkap.challenge.services.admission.RequestPriority;
+import com.flapkap.challenge.services.compression.CompressedResponse;
 import com.flapkap.challenge.services.user.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 
 @RestController
@@ -23,21 +38,70 @@ import java.net.URI;
 @Slf4j
 public class UserController {
     private final UserService userService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.users.batchSize:500}")
+    private int exportBatchSize;
+
+    @Value("${users.maxPageSize:200}")
+    private int maxPageSize;
+
+    @Value("${buyers.unscopedEndpoints.enabled:true}")
+    private boolean unscopedEndpoints;
 
     /**
-     * Get all users
+     * Get all users.
+     * The page size is capped, large listings are served by the streaming export instead of huge pages.
      *
      * @param page the pagination information
      * @return the list of users {@link UserDTO}
      * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse
     @GetMapping("/")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     public ResponseEntity<?> getAllUsers(Pageable page) {
         log.info("API ---> (/api/v1/users) has been called.");
         log.info("Method Location: {}", this.getClass().getName() + ".getAllUsers()");
+        if (page.getPageSize() > maxPageSize) {
+            page = PageRequest.of(page.getPageNumber(), maxPageSize, page.getSort());
+        }
         return ResponseEntity.ok(userService.getAllUsers(page));
     }
 
+    /**
+     * Export all users as a JSON array.
+     * The users are loaded in batches and written to the response as they come,
+     * so the heap usage doesn't grow with the number of users.
+     *
+     * @return the stream of users {@link UserDTO}
+     * */
+    @AdmissionPriority(RequestPriority.LOW)
+    @CompressedResponse(minSize = "${compression.export.minResponseSize:8192}")
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        log.info("API ---> (/api/v1/users/export) has been called.");
+        log.info("Method Location: {}", this.getClass().getName() + ".exportUsers()");
+
+        // let the generator buffer fill up instead of flushing after every user
+        ObjectWriter writer = objectMapper.writerFor(UserDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                userService.forEachUser(exportBatchSize, user -> {
+                    try {
+                        writer.writeValue(generator, user);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     /**
      * Create a New User (shouldn’t require authentication)
      *
@@ -160,22 +224,31 @@ public class UserController {
     }
 
     /**
-     * Deposit money to the current authenticated user
+     * Deposit money to the current authenticated user.
+     * Deprecated: the coin is checked against the default coins, outside of any machine.
+     * Kiosks deposit through {@link MachineController#depositMoney}, the endpoint is off with buyers.unscopedEndpoints.enabled=false.
      *
      * @param amount the amount of money to be deposited
      * @throws BadRequestException if the amount is invalid
-     * @throws EntityNotFoundException if the user does not exist
+     * @throws EntityNotFoundException if the user does not exist or the endpoint is off
      * */
+    @Deprecated
+    @AdmissionPriority(RequestPriority.CRITICAL)
     @PutMapping("/deposit/{amount}")
     @PreAuthorize("hasRole('ROLE_BUYER')")
     public ResponseEntity<?> depositMoney(@PathVariable Integer amount) throws BadRequestException, EntityNotFoundException {
         log.info("API ---> (/api/v1/users/deposit/{amount}) has been called.");
         log.info("Method Location: {}", this.getClass().getName() + ".depositMoney()");
         log.info("Request body: {}", amount);
+        if (!unscopedEndpoints) {
+            throw Rejections.MACHINE_REQUIRED;
+        }
         userService.depositMoney(amount);
         log.info("Money has been deposited successfully");
-        return ResponseEntity.ok(
-                ResponseDTO.builder()
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header(HttpHeaders.LINK, "</api/v1/machines/>; rel=\"successor-version\"")
+                .body(ResponseDTO.builder()
                         .message("Money has been deposited successfully")
                         .build()
         );
@@ -186,6 +259,7 @@ public class UserController {
      *
      * @throws EntityNotFoundException if the user does not exist
      * */
+    @AdmissionPriority(RequestPriority.CRITICAL)
     @PutMapping("/reset")
     @PreAuthorize("hasRole('ROLE_BUYER')")
     public ResponseEntity<?> resetDeposit() throws EntityNotFoundException {
@@ -5,12 +5,15 @@ import com.flapkap.challenge.dto.product.ProductDTO;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 @Builder
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class TransactionDTO {
     private int total;
     private int change;
+    private List<Integer> coins;
     private ProductDTO product;
     private int amount;
 }
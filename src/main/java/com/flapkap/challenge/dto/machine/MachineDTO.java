@@ -0,0 +1,14 @@
+package com.flapkap.challenge.dto.machine;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MachineDTO {
+    private Long id;
+    private String name;
+    private String location;
+}
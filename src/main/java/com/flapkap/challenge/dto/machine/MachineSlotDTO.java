@@ -0,0 +1,18 @@
+package com.flapkap.challenge.dto.machine;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder(toBuilder = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MachineSlotDTO {
+    private String slotCode;
+    private int capacity;
+    private int quantity;
+    // the product of the slot, all null for an empty slot
+    private Long productId;
+    private String productName;
+    private Integer cost;
+}
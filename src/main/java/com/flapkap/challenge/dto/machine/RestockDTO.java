@@ -0,0 +1,18 @@
+package com.flapkap.challenge.dto.machine;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A stock change of one slot, positive to refill it and negative to take items out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RestockDTO {
+    private String slotCode;
+    private int delta;
+}
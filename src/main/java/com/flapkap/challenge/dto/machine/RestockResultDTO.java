@@ -0,0 +1,16 @@
+package com.flapkap.challenge.dto.machine;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RestockResultDTO {
+    private int updated;
+    // the slots that don't exist or don't hold a product of the seller
+    private List<String> skipped;
+}
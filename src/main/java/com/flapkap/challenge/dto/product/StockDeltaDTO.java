@@ -0,0 +1,17 @@
+package com.flapkap.challenge.dto.product;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StockDeltaDTO {
+    private Long productId;
+    private Long sellerId;
+    private int amountAvailable;
+    private boolean lowStock;
+    private boolean soldOut;
+    private boolean deleted;
+}
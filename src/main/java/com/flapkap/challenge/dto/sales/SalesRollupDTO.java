@@ -0,0 +1,19 @@
+package com.flapkap.challenge.dto.sales;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SalesRollupDTO {
+    private Long productId;
+    private RollupGranularity granularity;
+    private LocalDateTime bucketStart;
+    private long quantity;
+    private long revenue;
+}
@@ -0,0 +1,23 @@
+package com.flapkap.challenge.entities;
+
+import lombok.*;
+
+import javax.persistence.*;
+
+/**
+ * The single row counting the catalog changes, see {@link com.flapkap.challenge.services.catalog.CatalogVersion}.
+ */
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Table(name = "catalog_revisions")
+public class CatalogRevision {
+    public static final long ID = 1;
+
+    @Id
+    private Long id;
+    @Column(nullable = false)
+    private long revision;
+}
@@ -0,0 +1,36 @@
+package com.flapkap.challenge.entities;
+
+import com.flapkap.challenge.dto.machine.MachineDTO;
+import com.flapkap.challenge.entities.base.BaseEntityAudit;
+import lombok.*;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+
+@Entity
+@EntityListeners(AuditingEntityListener.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+@Table(name = "machines")
+public class Machine extends BaseEntityAudit {
+    @Column(nullable = false, unique = true)
+    @NotBlank(message = "Machine name cannot be blank")
+    @Size(min = 3, max = 50, message = "Machine name must be between 3 and 50 characters")
+    private String name;
+    @Column
+    @Size(max = 100, message = "Machine location cannot be more than 100 characters")
+    private String location;
+
+    public MachineDTO toDTO() {
+        return MachineDTO.builder()
+                .id(id)
+                .name(name)
+                .location(location)
+                .build();
+    }
+}
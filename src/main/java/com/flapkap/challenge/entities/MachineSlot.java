@@ -0,0 +1,39 @@
+package com.flapkap.challenge.entities;
+
+import com.flapkap.challenge.entities.base.BaseEntity;
+import lombok.*;
+
+import javax.persistence.*;
+import javax.validation.constraints.Min;
+
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+@Table(name = "machine_slots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_machine_slots_code", columnNames = {"machine_id", "slot_code"})
+}, indexes = {
+        @Index(name = "idx_machine_slots_product", columnList = "product_id")
+})
+public class MachineSlot extends BaseEntity {
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "machine_id", nullable = false)
+    private Machine machine;
+    // the position on the machine, e.g. A1
+    @Column(name = "slot_code", nullable = false, length = 8)
+    private String slotCode;
+    // an empty slot has no product
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "product_id")
+    private Product product;
+    // the planogram: how many items the slot holds when full, and how many it holds now
+    @Column(nullable = false, columnDefinition = "int default 10")
+    @Min(value = 1, message = "Capacity must be greater than zero")
+    @Builder.Default
+    private int capacity = 10;
+    @Column(nullable = false, columnDefinition = "int default 0")
+    @Min(value = 0, message = "Quantity cannot be less than 0")
+    private int quantity;
+}
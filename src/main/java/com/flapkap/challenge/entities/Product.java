@@ -6,7 +6,6 @@ import lombok.*;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
-import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.Size;
@@ -25,13 +24,14 @@ public class Product extends BaseEntityAudit {
     @Size(min = 3, max = 50, message = "Product name must be between 3 and 20 characters")
     private String productName;
     @Column(nullable = false)
-    @Min(value = 5, message = "Cost cannot be less than 5 cents")
-    @Max(value = 100, message = "Cost cannot be more than 100 cents")
+    @Min(value = 1, message = "Cost must be positive")
     private int cost; // cost is int because I'm assuming we're dealing with cents, if we're dealing with dollars, then it should be double
     @Column(nullable = false)
     @Min(value = 0, message = "Amount available cannot be less than 0")
-    @Max(value = 20, message = "Amount available cannot be more than 20")
     private int amountAvailable;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "seller_id", nullable = false)
     private User seller;
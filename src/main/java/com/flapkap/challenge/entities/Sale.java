@@ -0,0 +1,30 @@
+package com.flapkap.challenge.entities;
+
+import com.flapkap.challenge.entities.base.BaseEntity;
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+@Table(name = "sales", indexes = @Index(name = "idx_sales_seller", columnList = "seller_id, sold_at"))
+public class Sale extends BaseEntity {
+    // plain ids instead of relations, the history outlives deleted products and users
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+    @Column(name = "buyer_id", nullable = false)
+    private Long buyerId;
+    @Column(nullable = false)
+    private int quantity;
+    @Column(nullable = false)
+    private int total;
+    @Column(name = "sold_at", nullable = false)
+    private LocalDateTime soldAt;
+}
@@ -0,0 +1,44 @@
+package com.flapkap.challenge.entities;
+
+import com.flapkap.challenge.dto.sales.SalesRollupDTO;
+import com.flapkap.challenge.entities.base.BaseEntity;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+@Table(name = "sales_rollups",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"seller_id", "product_id", "granularity", "bucket_start"}),
+        indexes = @Index(name = "idx_sales_rollups_seller", columnList = "seller_id, granularity, bucket_start"))
+public class SalesRollup extends BaseEntity {
+    @Column(name = "seller_id", nullable = false)
+    private Long sellerId;
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private RollupGranularity granularity;
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+    @Column(nullable = false)
+    private long quantity;
+    @Column(nullable = false)
+    private long revenue;
+
+    public SalesRollupDTO toDTO() {
+        return SalesRollupDTO.builder()
+                .productId(productId)
+                .granularity(granularity)
+                .bucketStart(bucketStart)
+                .quantity(quantity)
+                .revenue(revenue)
+                .build();
+    }
+}
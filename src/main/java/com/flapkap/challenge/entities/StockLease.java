@@ -0,0 +1,30 @@
+package com.flapkap.challenge.entities;
+
+import com.flapkap.challenge.entities.base.BaseEntity;
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Setter
+@Getter
+@Builder
+@Table(name = "stock_leases", indexes = {
+        @Index(name = "idx_stock_leases_expiry", columnList = "expires_at"),
+        @Index(name = "idx_stock_leases_node", columnList = "node_id")
+})
+public class StockLease extends BaseEntity {
+    // a plain id, a lease of a deleted product is simply dropped on expiry
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+    @Column(name = "node_id", nullable = false, length = 64)
+    private String nodeId;
+    // the stock of the lease that is not sold yet
+    @Column(nullable = false)
+    private int quantity;
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
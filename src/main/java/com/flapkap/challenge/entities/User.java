@@ -29,6 +29,12 @@ public class User extends BaseEntityAudit {
     private String password;
     @Column(nullable = false)
     private int deposit = 0;
+    // the unit of the coins making up the deposit, null while the deposit is empty
+    @Column(name = "deposit_unit", length = 32)
+    private String depositUnit;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private UserRole role;
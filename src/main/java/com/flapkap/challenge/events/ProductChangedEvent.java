@@ -0,0 +1,23 @@
+package com.flapkap.challenge.events;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Published whenever the catalog changes, consumed after the change is committed.
+ */
+@Data
+@Builder
+public class ProductChangedEvent {
+    private Long productId;
+    private Long sellerId;
+    private int amountAvailable;
+    private ChangeType type;
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        PURCHASED,
+        DELETED
+    }
+}
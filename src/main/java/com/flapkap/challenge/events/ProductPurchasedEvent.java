@@ -0,0 +1,20 @@
+package com.flapkap.challenge.events;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published by a purchase, consumed after the purchase is committed.
+ */
+@Data
+@Builder
+public class ProductPurchasedEvent {
+    private Long productId;
+    private Long sellerId;
+    private Long buyerId;
+    private int quantity;
+    private int total;
+    private LocalDateTime purchasedAt;
+}
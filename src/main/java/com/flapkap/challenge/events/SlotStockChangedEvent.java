@@ -0,0 +1,17 @@
+package com.flapkap.challenge.events;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Published whenever the stock of machine slots changes, consumed after the change is committed.
+ * A purchase names its slot and the quantity taken, a restock names the machine only.
+ */
+@Data
+@Builder
+public class SlotStockChangedEvent {
+    private Long machineId;
+    // null when several slots of the machine changed
+    private String slotCode;
+    private int delta;
+}
@@ -0,0 +1,14 @@
+package com.flapkap.challenge.events;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Published whenever the credentials or the role of a username may have changed,
+ * the cached user details of the username are evicted on every node.
+ */
+@Data
+@Builder
+public class UserChangedEvent {
+    private String username;
+}
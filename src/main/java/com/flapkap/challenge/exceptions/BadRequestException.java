@@ -10,4 +10,19 @@ public class BadRequestException extends RuntimeException {
         super(message);
     }
 
+    private BadRequestException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * An exception without stack trace nor suppressed exceptions, for the expected business rejections.
+     * It is immutable, so a single instance can be created once and thrown by every request.
+     *
+     * @param message the rejection message
+     * @return the exception
+     */
+    public static BadRequestException stackless(String message) {
+        return new BadRequestException(message, false);
+    }
+
 }
@@ -0,0 +1,65 @@
+package com.flapkap.challenge.exceptions;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.dto.ResponseDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Answers the business rejections with an error {@link ResponseDTO} directly from the controller,
+ * without the error dispatch of the default exception resolution.
+ * The JSON body of every message is serialized once and then written as is.
+ */
+@RestControllerAdvice
+@RequiredArgsConstructor
+public class BusinessExceptionHandler {
+    // the messages are constants, the bound only guards against a message built from request data
+    private static final int MAX_CACHED_BODIES = 256;
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+
+    @ExceptionHandler(BadRequestException.class)
+    public ResponseEntity<?> handleBadRequest(BadRequestException e, WebRequest request) throws JsonProcessingException {
+        return respond(HttpStatus.BAD_REQUEST, e.getMessage(), request);
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<?> handleNotFound(EntityNotFoundException e, WebRequest request) throws JsonProcessingException {
+        return respond(HttpStatus.NOT_FOUND, e.getMessage(), request);
+    }
+
+    private ResponseEntity<?> respond(HttpStatus status, String message, WebRequest request) throws JsonProcessingException {
+        // the kiosks negotiating the binary format get it serialized by the CBOR converter
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept != null && accept.contains(MediaType.APPLICATION_CBOR_VALUE)) {
+            return ResponseEntity.status(status).body(error(message));
+        }
+
+        byte[] body = message != null ? bodies.get(message) : null;
+        if (body == null) {
+            body = objectMapper.writeValueAsBytes(error(message));
+            if (message != null && bodies.size() < MAX_CACHED_BODIES) {
+                bodies.putIfAbsent(message, body);
+            }
+        }
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    private static ResponseDTO<Void> error(String message) {
+        return ResponseDTO.<Void>builder()
+                .success(false)
+                .message(message)
+                .build();
+    }
+}
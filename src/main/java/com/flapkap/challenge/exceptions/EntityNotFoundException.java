@@ -10,4 +10,19 @@ public class EntityNotFoundException extends RuntimeException {
         super(message);
     }
 
+    private EntityNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * An exception without stack trace nor suppressed exceptions, for the expected lookups of missing entities.
+     * It is immutable, so a single instance can be created once and thrown by every request.
+     *
+     * @param message the rejection message
+     * @return the exception
+     */
+    public static EntityNotFoundException stackless(String message) {
+        return new EntityNotFoundException(message, false);
+    }
+
 }
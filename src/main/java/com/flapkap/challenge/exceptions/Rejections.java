@@ -0,0 +1,33 @@
+package com.flapkap.challenge.exceptions;
+
+/**
+ * The preallocated exceptions of the expected business rejections,
+ * thrown as is so a rejection costs neither a stack trace nor a message.
+ */
+public final class Rejections {
+    public static final BadRequestException AMOUNT_REQUIRED = BadRequestException.stackless("Amount is required");
+    public static final BadRequestException AMOUNT_NEGATIVE = BadRequestException.stackless("Amount cannot be negative");
+    public static final BadRequestException AMOUNT_ZERO = BadRequestException.stackless("Amount cannot be zero");
+    public static final BadRequestException AMOUNT_NOT_POSITIVE = BadRequestException.stackless("Amount must be greater than zero");
+    public static final BadRequestException COST_NEGATIVE = BadRequestException.stackless("Cost cannot be negative");
+    public static final BadRequestException PRODUCT_EXISTS = BadRequestException.stackless("Product already exists");
+    public static final BadRequestException NOT_ENOUGH_PRODUCTS = BadRequestException.stackless("There are not enough products available");
+    public static final BadRequestException INSUFFICIENT_FUNDS = BadRequestException.stackless("Not sufficient funds. Please deposit more money");
+    public static final BadRequestException USERNAME_REQUIRED = BadRequestException.stackless("Username is required");
+    public static final BadRequestException USERNAME_EXISTS = BadRequestException.stackless("Username already exists");
+    public static final BadRequestException PASSWORD_REQUIRED = BadRequestException.stackless("Password is required");
+    public static final BadRequestException ROLE_REQUIRED = BadRequestException.stackless("Role is required");
+    public static final BadRequestException USER_DOES_NOT_EXIST = BadRequestException.stackless("User does not exist");
+    public static final BadRequestException MACHINE_EXISTS = BadRequestException.stackless("Machine already exists");
+    public static final BadRequestException SLOT_EMPTY = BadRequestException.stackless("The slot is empty");
+    public static final BadRequestException CAPACITY_NOT_POSITIVE = BadRequestException.stackless("Capacity must be greater than zero");
+
+    public static final EntityNotFoundException PRODUCT_NOT_FOUND = EntityNotFoundException.stackless("Product not found");
+    public static final EntityNotFoundException USER_NOT_FOUND = EntityNotFoundException.stackless("User not found");
+    public static final EntityNotFoundException MACHINE_NOT_FOUND = EntityNotFoundException.stackless("Machine not found");
+    public static final EntityNotFoundException SLOT_NOT_FOUND = EntityNotFoundException.stackless("Slot not found");
+    public static final EntityNotFoundException MACHINE_REQUIRED = EntityNotFoundException.stackless("Buy and deposit through a machine under /api/v1/machines/{machineId}");
+
+    private Rejections() {
+    }
+}
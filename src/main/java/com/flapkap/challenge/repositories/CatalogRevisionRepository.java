@@ -0,0 +1,22 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.CatalogRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CatalogRevisionRepository extends JpaRepository<CatalogRevision, Long> {
+
+    // a projection, the counter is read from the row and never from the persistence context
+    @Query("select c.revision from CatalogRevision c where c.id = " + CatalogRevision.ID)
+    Optional<Long> findRevision();
+
+    // the row lock orders the catalog changes of all nodes until their commit
+    @Modifying
+    @Query("update CatalogRevision c set c.revision = c.revision + 1 where c.id = " + CatalogRevision.ID)
+    int increment();
+}
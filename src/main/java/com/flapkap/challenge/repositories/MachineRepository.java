@@ -0,0 +1,14 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.Machine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MachineRepository extends JpaRepository<Machine, Long> {
+
+    Optional<Machine> findByName(String name);
+
+}
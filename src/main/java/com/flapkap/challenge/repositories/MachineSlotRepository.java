@@ -0,0 +1,51 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.MachineSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MachineSlotRepository extends JpaRepository<MachineSlot, Long> {
+
+    // the whole planogram of a machine in one query, the products are needed to build its slot state
+    @Query("select s from MachineSlot s left join fetch s.product where s.machine.id = :machineId order by s.slotCode")
+    List<MachineSlot> findByMachineIdWithProduct(@Param("machineId") Long machineId);
+
+    Optional<MachineSlot> findByMachineIdAndSlotCode(Long machineId, String slotCode);
+
+    @Query("select distinct s.machine.id from MachineSlot s where s.product.id = :productId")
+    List<Long> findMachineIdsByProductId(@Param("productId") Long productId);
+
+    // the slot row and its product id without loading the product
+    @Query("select s.id as id, p.id as productId from MachineSlot s left join s.product p " +
+            "where s.machine.id = :machineId and s.slotCode = :slotCode")
+    Optional<SlotProduct> findSlotProduct(@Param("machineId") Long machineId, @Param("slotCode") String slotCode);
+
+    @Query("select s.quantity from MachineSlot s where s.id = :id and s.product.id = :productId")
+    Optional<Integer> findQuantity(@Param("id") Long id, @Param("productId") Long productId);
+
+    @Modifying(flushAutomatically = true)
+    // the product condition guards against a slot that got another product since it was read
+    @Query("update MachineSlot s set s.quantity = s.quantity - :quantity " +
+            "where s.id = :id and s.product.id = :productId and s.quantity >= :quantity")
+    int takeStock(@Param("id") Long id, @Param("productId") Long productId, @Param("quantity") int quantity);
+
+    // the items of a deleted product leave the machines with it
+    @Modifying(flushAutomatically = true)
+    @Query("update MachineSlot s set s.product = null, s.quantity = 0 where s.product.id = :productId")
+    int emptyByProductId(@Param("productId") Long productId);
+
+    interface SlotProduct {
+        Long getId();
+
+        // null for an empty slot
+        Long getProductId();
+    }
+
+}
@@ -4,6 +4,9 @@ import com.flapkap.challenge.entities.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -15,4 +18,24 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     Optional<Product> findByProductName(String productName);
     Optional<Product> findByProductNameAndIdNot(String productName, Long id);
 
+    @Query("select p.seller.id from Product p where p.id = :id")
+    Optional<Long> findSellerIdById(@Param("id") Long id);
+
+    @Query("select p.amountAvailable from Product p where p.id = :id")
+    Optional<Integer> findAmountAvailableById(@Param("id") Long id);
+
+    @Query("select p.version from Product p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // the version is bumped so concurrent entity updates of the product fail their optimistic check
+    @Modifying(flushAutomatically = true)
+    @Query("update Product p set p.amountAvailable = p.amountAvailable - :quantity, p.version = p.version + 1 " +
+            "where p.id = :id and p.amountAvailable >= :quantity")
+    int takeStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Product p set p.amountAvailable = p.amountAvailable + :quantity, p.version = p.version + 1 " +
+            "where p.id = :id")
+    int returnStock(@Param("id") Long id, @Param("quantity") int quantity);
+
 }
@@ -0,0 +1,16 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.Sale;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SaleRepository extends JpaRepository<Sale, Long> {
+
+    @Modifying
+    @Query("delete from Sale s where s.sellerId = :sellerId")
+    int deleteBySellerId(@Param("sellerId") Long sellerId);
+}
@@ -0,0 +1,32 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.SalesRollup;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, Long> {
+
+    // a single statement adds the sale to an existing bucket, so concurrent writers on several nodes don't lose increments
+    @Modifying
+    @Query("update SalesRollup r set r.quantity = r.quantity + :quantity, r.revenue = r.revenue + :revenue " +
+            "where r.sellerId = :sellerId and r.productId = :productId and r.granularity = :granularity and r.bucketStart = :bucketStart")
+    int addSale(@Param("sellerId") Long sellerId, @Param("productId") Long productId,
+                @Param("granularity") RollupGranularity granularity, @Param("bucketStart") LocalDateTime bucketStart,
+                @Param("quantity") long quantity, @Param("revenue") long revenue);
+
+    Page<SalesRollup> findBySellerIdAndGranularityOrderByBucketStartDesc(Long sellerId, RollupGranularity granularity,
+                                                                         Pageable page);
+
+    @Modifying
+    @Query("delete from SalesRollup r where r.sellerId = :sellerId")
+    int deleteBySellerId(@Param("sellerId") Long sellerId);
+}
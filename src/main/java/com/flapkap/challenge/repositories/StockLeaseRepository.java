@@ -0,0 +1,35 @@
+package com.flapkap.challenge.repositories;
+
+import com.flapkap.challenge.entities.StockLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockLeaseRepository extends JpaRepository<StockLease, Long> {
+
+    List<StockLease> findByExpiresAtBefore(LocalDateTime cutoff);
+    List<StockLease> findByNodeId(String nodeId);
+
+    @Query("select coalesce(sum(l.quantity), 0) from StockLease l where l.productId = :productId")
+    long sumQuantityByProductId(@Param("productId") Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select l from StockLease l where l.id = :id")
+    Optional<StockLease> findByIdForUpdate(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update StockLease l set l.quantity = l.quantity - :quantity " +
+            "where l.id = :id and l.nodeId = :nodeId and l.quantity >= :quantity and l.expiresAt > :now")
+    int consume(@Param("id") Long id, @Param("nodeId") String nodeId,
+                @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+
+}
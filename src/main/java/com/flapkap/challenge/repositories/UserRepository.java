@@ -2,6 +2,7 @@ package com.flapkap.challenge.repositories;
 
 import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.entities.enums.UserRole;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -14,5 +15,6 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneByUsername(String username);
     List<User> findByRole(UserRole role);
     Optional<User> findByUsername(String username);
+    List<User> findByIdGreaterThanOrderByIdAsc(Long id, Pageable page);
 
 }
@@ -0,0 +1,28 @@
+package com.flapkap.challenge.security;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * The groups of endpoints that share a concurrency limit.
+ */
+public enum EndpointClass {
+    PURCHASE,
+    LOGIN,
+    READ,
+    WRITE;
+
+    public static EndpointClass of(HttpServletRequest request) {
+        String path = request.getServletPath();
+        String method = request.getMethod();
+
+        if (("POST".equals(method) && path.endsWith("/buy"))
+                || ("PUT".equals(method) && (path.startsWith("/api/v1/users/deposit/") || path.equals("/api/v1/users/reset")
+                        || (path.startsWith("/api/v1/machines/") && path.contains("/deposit/"))))) {
+            return PURCHASE;
+        }
+        if (path.startsWith("/api/auth/")) {
+            return LOGIN;
+        }
+        return "GET".equals(method) || "HEAD".equals(method) ? READ : WRITE;
+    }
+}
@@ -31,6 +31,20 @@ public class JWTUtils {
         return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
     }
 
+    /**
+     * Verify a token without logging the failures, for callers that see unverified tokens on every request
+     *
+     * @param authToken the token
+     * @return the subject of the token, null if the token is not valid
+     */
+    public String getVerifiedSubject(String authToken) {
+        try {
+            return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken).getBody().getSubject();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     public boolean validateJwtToken(String authToken) {
         try {
             Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
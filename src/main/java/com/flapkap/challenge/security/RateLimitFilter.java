@@ -0,0 +1,141 @@
+package com.flapkap.challenge.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control placed ahead of {@link AuthTokenFilter}, so rejected requests never cost a database lookup.
+ * Purchases and deposits are rate limited per client, and every {@link EndpointClass} has a global concurrency limit.
+ * Both limits answer 429 right away instead of queueing the request.
+ *
+ * The client is the subject of a bearer token whose signature checks out, or the IP address otherwise,
+ * so made up tokens share the bucket of their address instead of getting a fresh one each.
+ * The number of buckets is capped, the clients over the cap share one overflow bucket until the eviction.
+ *
+ * This filter runs before the adaptive concurrency limit of the load shedding interceptor: a request
+ * over its client rate or over the limit of its endpoint class gets 429 here, the requests let through
+ * can still get 503 from the interceptor when the database is saturated.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+    private static final byte[] TOO_MANY_REQUESTS = ("{\"status\":429,\"error\":\"Too Many Requests\","
+            + "\"message\":\"Too many requests, please try again later\"}").getBytes(StandardCharsets.UTF_8);
+
+    private static final String OVERFLOW_CLIENT = "overflow";
+
+    @Autowired
+    private JWTUtils jwtUtils;
+
+    @Value("${ratelimit.enabled:true}")
+    private boolean enabled;
+    @Value("${ratelimit.purchase.ratePerSecond:5}")
+    private double purchaseRatePerSecond;
+    @Value("${ratelimit.purchase.burst:20}")
+    private int purchaseBurst;
+    @Value("${ratelimit.maxClients:100000}")
+    private int maxClients;
+    @Value("${ratelimit.concurrency.purchase:64}")
+    private int purchaseConcurrency;
+    @Value("${ratelimit.concurrency.login:16}")
+    private int loginConcurrency;
+    @Value("${ratelimit.concurrency.read:256}")
+    private int readConcurrency;
+    @Value("${ratelimit.concurrency.write:64}")
+    private int writeConcurrency;
+
+    private final Map<String, RateLimiter> clients = new ConcurrentHashMap<>();
+    private final Map<EndpointClass, Semaphore> concurrency = new EnumMap<>(EndpointClass.class);
+
+    @PostConstruct
+    public void init() {
+        concurrency.put(EndpointClass.PURCHASE, new Semaphore(purchaseConcurrency));
+        concurrency.put(EndpointClass.LOGIN, new Semaphore(loginConcurrency));
+        concurrency.put(EndpointClass.READ, new Semaphore(readConcurrency));
+        concurrency.put(EndpointClass.WRITE, new Semaphore(writeConcurrency));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        EndpointClass endpointClass = EndpointClass.of(request);
+        if (endpointClass == EndpointClass.PURCHASE) {
+            String client = clientKey(request);
+            if (clients.size() >= maxClients && !clients.containsKey(client)) {
+                client = OVERFLOW_CLIENT;
+            }
+            RateLimiter limiter = clients.computeIfAbsent(client,
+                    key -> new RateLimiter(purchaseRatePerSecond, purchaseBurst));
+            long waitNanos = limiter.tryAcquire(System.nanoTime());
+            if (waitNanos > 0) {
+                reject(response, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+                return;
+            }
+        }
+
+        Semaphore permits = concurrency.get(endpointClass);
+        if (!permits.tryAcquire()) {
+            log.warn("Concurrency limit of {} requests reached", endpointClass);
+            reject(response, 1);
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Drop the limiters of clients that are idle, their bucket is full again
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.evictionIntervalMs:60000}")
+    public void evictIdleClients() {
+        long now = System.nanoTime();
+        clients.values().removeIf(limiter -> limiter.isIdle(now));
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        String headerAuth = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
+            // checking the signature is a hash over the token, the user itself is loaded later on
+            String username = jwtUtils.getVerifiedSubject(headerAuth.substring(7));
+            if (username != null) {
+                return "user:" + username;
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(TOO_MANY_REQUESTS.length);
+        response.getOutputStream().write(TOO_MANY_REQUESTS);
+    }
+}
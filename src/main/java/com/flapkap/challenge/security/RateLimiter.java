@@ -0,0 +1,51 @@
+package com.flapkap.challenge.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented with the generic cell rate algorithm.
+ * The whole state is the theoretical arrival time of the next request, kept in a single {@link AtomicLong},
+ * so admitting a request is one compare-and-set without any lock or refill thread.
+ */
+public class RateLimiter {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * @param ratePerSecond the sustained number of requests per second
+     * @param burst the number of requests that can be admitted at once
+     */
+    public RateLimiter(double ratePerSecond, int burst) {
+        this.emissionIntervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, burst - 1);
+    }
+
+    /**
+     * Take a token if one is available
+     *
+     * @param nowNanos the current {@link System#nanoTime()}
+     * @return 0 if the request is admitted, otherwise the number of nanoseconds until a token is available
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long arrival = current == Long.MIN_VALUE || current - nowNanos < 0 ? nowNanos : current;
+            long wait = arrival - nowNanos - burstToleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, arrival + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * @return true if the bucket is full again, the limiter can then be dropped and recreated without any effect
+     */
+    public boolean isIdle(long nowNanos) {
+        long current = theoreticalArrival.get();
+        return current == Long.MIN_VALUE || current - nowNanos <= 0;
+    }
+}
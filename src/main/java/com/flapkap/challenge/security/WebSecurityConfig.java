@@ -33,6 +33,7 @@ public class WebSecurityConfig {
     private static final String[] AUTH_WHITELIST = {
             "/",
             "/api/auth/**",
+            "/actuator/health/**",
     };
     private static final String[] AUTH_AUTHENTICATED_LIST = {
             "/api/v1/**"
@@ -43,6 +44,11 @@ public class WebSecurityConfig {
         return new AuthTokenFilter();
     }
 
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
     @Bean
     public DaoAuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
@@ -82,6 +88,7 @@ public class WebSecurityConfig {
         http.authenticationProvider(authenticationProvider());
 
         http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(rateLimitFilter(), AuthTokenFilter.class);
 
         return http.build();
     }
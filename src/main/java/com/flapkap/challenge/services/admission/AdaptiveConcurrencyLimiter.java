@@ -0,0 +1,131 @@
+package com.flapkap.challenge.services.admission;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Adaptive (AIMD) limit on the number of requests in flight.
+ * The limit grows by one per round of requests while latency stays under the target and no thread waits
+ * for a pooled connection, and is cut by the backoff ratio as soon as one of them is exceeded,
+ * so the server settles just below the point where requests start queueing on the database pool.
+ */
+@Component
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+    private final ObjectProvider<HikariDataSource> dataSources;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits = new AtomicLong();
+    private final AtomicLong lastDecrease = new AtomicLong();
+    private volatile List<HikariDataSource> pools;
+
+    @Value("${loadshedding.minLimit:8}")
+    private int minLimit;
+    @Value("${loadshedding.maxLimit:512}")
+    private int maxLimit;
+    @Value("${loadshedding.targetLatencyMs:250}")
+    private long targetLatencyMs;
+    @Value("${loadshedding.backoffRatio:0.9}")
+    private double backoffRatio;
+    @Value("${loadshedding.lowPriorityShare:0.5}")
+    private double lowPriorityShare;
+    @Value("${loadshedding.decreaseIntervalMs:100}")
+    private long decreaseIntervalMs;
+
+    public AdaptiveConcurrencyLimiter(ObjectProvider<HikariDataSource> dataSources,
+                                      @Value("${loadshedding.initialLimit:64}") int initialLimit) {
+        this.dataSources = dataSources;
+        this.limitBits.set(Double.doubleToLongBits(initialLimit));
+    }
+
+    /**
+     * Admit a request, every admitted request must be followed by {@link #release(long)}
+     *
+     * @param priority the priority of the request
+     * @return true if the request is admitted
+     */
+    public boolean tryAcquire(RequestPriority priority) {
+        int current = inFlight.incrementAndGet();
+        boolean admitted;
+        switch (priority) {
+            case CRITICAL:
+                admitted = true;
+                break;
+            case LOW:
+                admitted = current <= getLimit() * lowPriorityShare && getThreadsAwaitingConnection() == 0;
+                break;
+            default:
+                admitted = current <= getLimit();
+        }
+        if (!admitted) {
+            inFlight.decrementAndGet();
+        }
+        return admitted;
+    }
+
+    /**
+     * Release an admitted request and adjust the limit from its latency and the pool saturation
+     *
+     * @param latencyNanos the time the request took
+     */
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        long now = System.nanoTime();
+
+        if (TimeUnit.NANOSECONDS.toMillis(latencyNanos) > targetLatencyMs || getThreadsAwaitingConnection() > 0) {
+            // one decrease per interval, the requests completing together report the same congestion
+            long last = lastDecrease.get();
+            if (now - last >= TimeUnit.MILLISECONDS.toNanos(decreaseIntervalMs) && lastDecrease.compareAndSet(last, now)) {
+                double limit = updateLimit(Math.max(minLimit, getLimit() * backoffRatio));
+                log.debug("Concurrency limit decreased to {}", (int) limit);
+            }
+        } else if (current >= getLimit() / 2) {
+            // only grow while the limit is actually used, +1 for a whole round of requests
+            double limit = getLimit();
+            updateLimit(Math.min(maxLimit, limit + 1 / limit));
+        }
+    }
+
+    public double getLimit() {
+        return Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of threads waiting for a connection, summed over all the Hikari pools
+     */
+    public int getThreadsAwaitingConnection() {
+        List<HikariDataSource> hikariPools = pools;
+        if (hikariPools == null) {
+            hikariPools = dataSources.orderedStream().collect(Collectors.toList());
+            pools = hikariPools;
+        }
+
+        int waiting = 0;
+        for (HikariDataSource pool : hikariPools) {
+            // the pool bean is null until the pool is started
+            HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+            if (bean != null) {
+                waiting += bean.getThreadsAwaitingConnection();
+            }
+        }
+        return waiting;
+    }
+
+    private double updateLimit(double limit) {
+        limitBits.set(Double.doubleToLongBits(limit));
+        return limit;
+    }
+}
@@ -0,0 +1,17 @@
+package com.flapkap.challenge.services.admission;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The {@link RequestPriority} of a controller method, methods without it are {@link RequestPriority#NORMAL}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AdmissionPriority {
+    RequestPriority value();
+}
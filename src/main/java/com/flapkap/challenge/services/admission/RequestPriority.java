@@ -0,0 +1,13 @@
+package com.flapkap.challenge.services.admission;
+
+/**
+ * How willing the server is to shed a request under load.
+ */
+public enum RequestPriority {
+    /** Always admitted, the purchase flow of the kiosks */
+    CRITICAL,
+    /** Admitted while the in-flight requests are under the adaptive limit */
+    NORMAL,
+    /** Listings and reports, shed first: admitted only under a share of the limit and while no one waits for a connection */
+    LOW
+}
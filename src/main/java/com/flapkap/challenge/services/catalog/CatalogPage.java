@@ -0,0 +1,37 @@
+package com.flapkap.challenge.services.catalog;
+
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A serialized page of the catalog, ready to be written to the response as is.
+ * The gzip variant is compressed on first use and kept next to the plain bytes.
+ */
+public class CatalogPage {
+    @Getter
+    private final byte[] json;
+    private volatile byte[] gzip;
+
+    public CatalogPage(byte[] json) {
+        this.json = json;
+    }
+
+    public byte[] getGzip() {
+        byte[] compressed = gzip;
+        if (compressed == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            compressed = out.toByteArray();
+            gzip = compressed;
+        }
+        return compressed;
+    }
+}
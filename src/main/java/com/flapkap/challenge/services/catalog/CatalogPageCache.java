@@ -0,0 +1,184 @@
+package com.flapkap.challenge.services.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.dto.product.ProductDTO;
+import com.flapkap.challenge.events.ProductChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the serialized JSON of the catalog pages per (page, size, sort), the least recently used page
+ * is evicted once catalog.cache.maxEntries pages are cached.
+ * A page is served for the catalog tag it was loaded at, a product created or deleted on any node shifts the pages.
+ * The stock of a product purchased on this node drops the pages holding that product only, the other pages stay.
+ * The stock sold on other nodes reaches the cached pages after catalog.cache.ttlMs.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogPageCache {
+    private final ObjectMapper objectMapper;
+    // in access order, the least recently used page first
+    private final LinkedHashMap<String, CachedPage> pages = new LinkedHashMap<>(16, 0.75f, true);
+    // the keys of the cached pages holding each product
+    private final Map<Long, Set<String>> pagesByProduct = new HashMap<>();
+    // the loads running, each one collects the products changed meanwhile
+    private final List<Set<Long>> loads = new ArrayList<>();
+
+    @Value("${catalog.cache.maxEntries:256}")
+    private int maxEntries;
+    @Value("${catalog.cache.ttlMs:1000}")
+    private long ttlMs;
+
+    /**
+     * Return the serialized page, loading and serializing it on a miss
+     *
+     * @param pageable the requested page
+     * @param etag the catalog tag read before the page, see {@link CatalogVersion#etag()}
+     * @param loader loads the page from the database
+     * @return the serialized page {@link CatalogPage}
+     */
+    public CatalogPage get(Pageable pageable, String etag, Supplier<Page<ProductDTO>> loader) {
+        String key = key(pageable);
+        Set<Long> changed = new HashSet<>();
+        synchronized (this) {
+            CachedPage cached = pages.get(key);
+            if (cached != null && cached.etag.equals(etag)
+                    && System.nanoTime() - cached.loadedAt <= TimeUnit.MILLISECONDS.toNanos(ttlMs)) {
+                return cached.page;
+            }
+            loads.add(changed);
+        }
+
+        long loadedAt = System.nanoTime();
+        Page<ProductDTO> products;
+        try {
+            products = loader.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                loads.remove(changed);
+            }
+            throw e;
+        }
+        CatalogPage page = new CatalogPage(serialize(products));
+        Set<Long> productIds = products.getContent().stream().map(ProductDTO::getId).collect(Collectors.toSet());
+
+        synchronized (this) {
+            loads.remove(changed);
+            // a page loaded across a purchase of one of its products may hold the stock before it
+            changed.retainAll(productIds);
+            if (changed.isEmpty()) {
+                put(key, new CachedPage(page, etag, productIds, loadedAt));
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Drop the pages holding the product, and keep the loads running from caching it
+     *
+     * @param productId the product id
+     */
+    public synchronized void invalidate(Long productId) {
+        for (Set<Long> changed : loads) {
+            changed.add(productId);
+        }
+        Set<String> keys = pagesByProduct.remove(productId);
+        if (keys != null) {
+            for (String key : keys) {
+                remove(key);
+            }
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.getProductId());
+    }
+
+    /**
+     * @return the number of cached pages
+     */
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    private void put(String key, CachedPage page) {
+        remove(key);
+        pages.put(key, page);
+        for (Long productId : page.productIds) {
+            pagesByProduct.computeIfAbsent(productId, id -> new HashSet<>()).add(key);
+        }
+
+        Iterator<Map.Entry<String, CachedPage>> eldest = pages.entrySet().iterator();
+        while (pages.size() > maxEntries && eldest.hasNext()) {
+            Map.Entry<String, CachedPage> entry = eldest.next();
+            eldest.remove();
+            unindex(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void remove(String key) {
+        CachedPage removed = pages.remove(key);
+        if (removed != null) {
+            unindex(key, removed);
+        }
+    }
+
+    private void unindex(String key, CachedPage page) {
+        for (Long productId : page.productIds) {
+            Set<String> keys = pagesByProduct.get(productId);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.isEmpty()) {
+                    pagesByProduct.remove(productId);
+                }
+            }
+        }
+    }
+
+    private byte[] serialize(Page<ProductDTO> products) {
+        try {
+            return objectMapper.writeValueAsBytes(products);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize the catalog page", e);
+        }
+    }
+
+    private static String key(Pageable pageable) {
+        return pageable.getPageNumber() + ":" + pageable.getPageSize() + ":" + pageable.getSort();
+    }
+
+    private static class CachedPage {
+        private final CatalogPage page;
+        private final String etag;
+        private final Set<Long> productIds;
+        private final long loadedAt;
+
+        private CachedPage(CatalogPage page, String etag, Set<Long> productIds, long loadedAt) {
+            this.page = page;
+            this.etag = etag;
+            this.productIds = productIds;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.flapkap.challenge.services.catalog;
+
+import com.flapkap.challenge.entities.CatalogRevision;
+import com.flapkap.challenge.events.ProductChangedEvent;
+import com.flapkap.challenge.repositories.CatalogRevisionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The version of the catalog, used as the entity tag of the product list.
+ * It is a counter in the database that every product creation, update and deletion increments in its own
+ * transaction, so every node hands out the same tag for the same catalog. Purchases don't change it:
+ * the stock of the list is advisory, the kiosks follow it on the stock stream. The tag is therefore weak.
+ *
+ * The counter is cached, a change committed on this node is read on the next request and a change
+ * committed on another node within catalog.version.refreshMs.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogVersion {
+    private final CatalogRevisionRepository catalogRevisionRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${catalog.version.refreshMs:1000}")
+    private long refreshMs;
+
+    private volatile long revision;
+    // when the cached revision was read, 0 when it must be read again
+    private volatile long readAt;
+
+    /**
+     * Create the counter row, the first node to start creates it
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void createRevision() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (!catalogRevisionRepository.existsById(CatalogRevision.ID)) {
+                    catalogRevisionRepository.saveAndFlush(new CatalogRevision(CatalogRevision.ID, 0));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.debug("The catalog revision was created by another node");
+        }
+    }
+
+    /**
+     * Count a catalog change, must be called in the transaction of the change
+     */
+    public void increment() {
+        if (catalogRevisionRepository.increment() == 0) {
+            log.warn("The catalog revision row is missing, the catalog tag won't change");
+        }
+    }
+
+    /**
+     * @return the weak entity tag of the current catalog version
+     */
+    public String etag() {
+        long now = System.nanoTime();
+        if (readAt == 0 || now - readAt > TimeUnit.MILLISECONDS.toNanos(refreshMs)) {
+            revision = catalogRevisionRepository.findRevision().orElse(0L);
+            readAt = now;
+        }
+        return "W/\"c" + revision + "\"";
+    }
+
+    /**
+     * Forget the cached revision, the next tag reads it again
+     */
+    public void expire() {
+        readAt = 0;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.getType() != ProductChangedEvent.ChangeType.PURCHASED) {
+            expire();
+        }
+    }
+
+    /**
+     * Build the strong entity tag of a single product
+     *
+     * @param productId the product id
+     * @param productVersion the version of the product row
+     * @return the entity tag
+     */
+    public static String productEtag(Long productId, long productVersion) {
+        return "\"p" + productId + "." + productVersion + "\"";
+    }
+}
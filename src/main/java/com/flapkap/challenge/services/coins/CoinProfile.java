@@ -0,0 +1,176 @@
+package com.flapkap.challenge.services.coins;
+
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.utils.CoinSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable coin configuration of a market: the accepted coins, their unit,
+ * the preallocated rejections and what is needed to pay back change.
+ */
+public final class CoinProfile {
+    // the largest change table a profile may allocate, about 8 MB
+    private static final int MAX_TABLE = 1 << 20;
+
+    private final String name;
+    private final CoinSet coins;
+    private final String unit;
+    // the greatest common divisor of the coins, and the coin values divided by it, descending
+    private final int gcd;
+    private final int[] units;
+    // fewest coins and the last coin used for every amount up to the bound, in gcd units
+    private final int bound;
+    private final int[] counts;
+    private final int[] lastCoins;
+    private final BadRequestException invalidDeposit;
+    private final BadRequestException invalidCost;
+    private final BadRequestException otherCurrency;
+
+    public CoinProfile(String name, CoinSet coins, String unit) {
+        this.name = name;
+        this.coins = coins;
+        this.unit = unit;
+
+        int[] values = coins.values();
+        int divisor = 0;
+        for (int value : values) {
+            divisor = gcd(divisor, value);
+        }
+        this.gcd = divisor;
+        this.units = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            units[i] = values[values.length - 1 - i] / divisor;
+        }
+
+        // some optimal change uses fewer than largest other coins, otherwise a subset of them would sum up
+        // to a multiple of the largest coin and could be swapped for as many largest coins or fewer.
+        // The rest left beside the largest coins is therefore below (largest - 1) * second largest.
+        int largest = units[0];
+        long second = units.length > 1 ? units[1] : 0;
+        long limit = Math.max(largest, (largest - 1) * second);
+        if (limit > MAX_TABLE) {
+            throw new IllegalArgumentException("The coins " + coins + " are too far apart to pay back change");
+        }
+        this.bound = (int) limit;
+        this.counts = new int[bound + 1];
+        this.lastCoins = new int[bound + 1];
+        for (int value = 1; value <= bound; value++) {
+            counts[value] = Integer.MAX_VALUE;
+            for (int coin : units) {
+                if (coin <= value && counts[value - coin] != Integer.MAX_VALUE && counts[value - coin] + 1 < counts[value]) {
+                    counts[value] = counts[value - coin] + 1;
+                    lastCoins[value] = coin;
+                }
+            }
+        }
+
+        this.invalidDeposit = BadRequestException.stackless(
+                "Invalid amount. Please deposit " + coins.describe() + " " + unit + " coins.");
+        this.invalidCost = BadRequestException.stackless(
+                "Invalid cost. Allowed prices are " + coins.describe() + " " + unit + " coins");
+        this.otherCurrency = BadRequestException.stackless(
+                "Your balance is in another currency than " + unit + ". Please use it on another machine or reset it");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CoinSet getCoins() {
+        return coins;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * Check that the amount is a single accepted coin
+     *
+     * @param amount the deposited amount
+     * @throws BadRequestException if it isn't
+     */
+    public void checkDeposit(int amount) throws BadRequestException {
+        if (!coins.contains(amount)) {
+            throw invalidDeposit;
+        }
+    }
+
+    /**
+     * Check that the cost is one of the coin values
+     *
+     * @param cost the product cost
+     * @throws BadRequestException if it isn't
+     */
+    public void checkCost(int cost) throws BadRequestException {
+        if (!coins.contains(cost)) {
+            throw invalidCost;
+        }
+    }
+
+    /**
+     * Check that a balance can be spent or topped up with the coins of this profile
+     *
+     * @param balanceUnit the unit of the balance, null for an empty balance or one from before the units
+     * @throws BadRequestException if the balance is in another unit
+     */
+    public void checkBalance(String balanceUnit) throws BadRequestException {
+        if (balanceUnit != null && !balanceUnit.equals(unit)) {
+            throw otherCurrency;
+        }
+    }
+
+    /**
+     * The fewest coins paying back the amount.
+     * The largest coins are taken first and the rest comes from the table computed with the profile,
+     * so the work doesn't grow with the amount beyond the returned list itself.
+     *
+     * @param amount the change
+     * @return the coins, largest first, empty if the amount can't be paid with the coins of the profile
+     */
+    public List<Integer> change(int amount) {
+        if (amount <= 0 || amount % gcd != 0) {
+            return Collections.emptyList();
+        }
+
+        int target = amount / gcd;
+        int largest = units[0];
+        int best = -1;
+        long bestCount = Long.MAX_VALUE;
+        for (int rest = target % largest; rest <= bound && rest <= target; rest += largest) {
+            if (counts[rest] != Integer.MAX_VALUE) {
+                long count = (target - rest) / largest + (long) counts[rest];
+                if (count < bestCount) {
+                    best = rest;
+                    bestCount = count;
+                }
+            }
+        }
+        if (best < 0) {
+            return Collections.emptyList();
+        }
+
+        List<Integer> change = new ArrayList<>((int) bestCount);
+        for (int i = (target - best) / largest; i > 0; i--) {
+            change.add(largest * gcd);
+        }
+        int from = change.size();
+        for (int value = best; value > 0; value -= lastCoins[value]) {
+            change.add(lastCoins[value] * gcd);
+        }
+        change.subList(from, change.size()).sort(Collections.reverseOrder());
+        return change;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + coins + " " + unit;
+    }
+}
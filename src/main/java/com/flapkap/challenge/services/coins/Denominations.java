@@ -0,0 +1,146 @@
+package com.flapkap.challenge.services.coins;
+
+import com.flapkap.challenge.utils.CoinSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link CoinProfile}s of the markets and the profile of every machine.
+ * The default profile comes from coins.denominations and coins.unit, more profiles and the machine assignments
+ * come from the optional coins.profilesFile, e.g.
+ *
+ * eu.coins=5,10,20,50,100,200
+ * eu.unit=euro cent
+ * machine.42=eu
+ *
+ * The file is reloaded when it changes. A reload builds a complete new snapshot and swaps it in at once,
+ * a purchase in flight keeps the profile it already resolved and nobody waits for the reload.
+ * A file that doesn't parse is logged and the current snapshot stays in place.
+ */
+@Component
+@Slf4j
+public class Denominations {
+    public static final String DEFAULT_PROFILE = "default";
+    private static final String MACHINE_PREFIX = "machine.";
+
+    private final CoinProfile defaultProfile;
+    private final Path profilesFile;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    private volatile long loadedModified = Long.MIN_VALUE;
+
+    public Denominations(@Value("${coins.denominations:5,10,20,50,100}") int[] denominations,
+                         @Value("${coins.unit:cent}") String unit,
+                         @Value("${coins.profilesFile:}") String profilesFile) {
+        this.defaultProfile = new CoinProfile(DEFAULT_PROFILE, CoinSet.of(denominations), unit);
+        this.profilesFile = StringUtils.hasText(profilesFile) ? Path.of(profilesFile) : null;
+        this.snapshot.set(new Snapshot(Collections.singletonMap(DEFAULT_PROFILE, defaultProfile), Collections.emptyMap()));
+        reloadIfChanged();
+        log.info("Default coins: {}", defaultProfile);
+    }
+
+    /**
+     * @return the profile of the machines without their own profile
+     */
+    public CoinProfile defaults() {
+        return snapshot.get().profiles.get(DEFAULT_PROFILE);
+    }
+
+    /**
+     * @param machineId the machine id, null for the default profile
+     * @return the profile of the machine
+     */
+    public CoinProfile forMachine(Long machineId) {
+        Snapshot current = snapshot.get();
+        if (machineId != null) {
+            CoinProfile profile = current.machines.get(machineId);
+            if (profile != null) {
+                return profile;
+            }
+        }
+        return current.profiles.get(DEFAULT_PROFILE);
+    }
+
+    /**
+     * @param name the profile name
+     * @return the profile, null if there is none with that name
+     */
+    public CoinProfile getProfile(String name) {
+        return snapshot.get().profiles.get(name);
+    }
+
+    @Scheduled(fixedDelayString = "${coins.reloadIntervalMs:10000}")
+    public void reloadIfChanged() {
+        if (profilesFile == null) {
+            return;
+        }
+
+        try {
+            long modified = Files.getLastModifiedTime(profilesFile).toMillis();
+            if (modified != loadedModified) {
+                snapshot.set(load());
+                loadedModified = modified;
+                log.info("Coin profiles loaded from {}: {}", profilesFile, snapshot.get().profiles.values());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Coin profiles not loaded from {}, keeping the current ones: {}", profilesFile, e.getMessage());
+        }
+    }
+
+    private Snapshot load() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(profilesFile)) {
+            properties.load(reader);
+        }
+
+        Map<String, CoinProfile> profiles = new HashMap<>();
+        profiles.put(DEFAULT_PROFILE, defaultProfile);
+        for (String key : properties.stringPropertyNames()) {
+            if (key.endsWith(".coins") && !key.startsWith(MACHINE_PREFIX)) {
+                String name = key.substring(0, key.length() - ".coins".length());
+                int[] values = Arrays.stream(properties.getProperty(key).split(","))
+                        .map(String::trim)
+                        .mapToInt(Integer::parseInt)
+                        .toArray();
+                profiles.put(name, new CoinProfile(name, CoinSet.of(values),
+                        properties.getProperty(name + ".unit", defaultProfile.getUnit())));
+            }
+        }
+
+        Map<Long, CoinProfile> machines = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(MACHINE_PREFIX)) {
+                String name = properties.getProperty(key).trim();
+                CoinProfile profile = profiles.get(name);
+                if (profile == null) {
+                    throw new IllegalArgumentException("Unknown coin profile " + name + " for " + key);
+                }
+                machines.put(Long.valueOf(key.substring(MACHINE_PREFIX.length())), profile);
+            }
+        }
+        return new Snapshot(Map.copyOf(profiles), Map.copyOf(machines));
+    }
+
+    private static final class Snapshot {
+        private final Map<String, CoinProfile> profiles;
+        private final Map<Long, CoinProfile> machines;
+
+        private Snapshot(Map<String, CoinProfile> profiles, Map<Long, CoinProfile> machines) {
+            this.profiles = profiles;
+            this.machines = machines;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.flapkap.challenge.services.compression;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Gzip compresses the response of a controller method for the clients that accept it,
+ * once the body reaches the minimum size. Methods without it are never compressed.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CompressedResponse {
+
+    /**
+     * @return the minimum body size in bytes, placeholders are resolved so every endpoint can have its own property
+     */
+    String minSize() default "${compression.minResponseSize:1024}";
+}
@@ -0,0 +1,286 @@
+package com.flapkap.challenge.services.compression;
+
+import org.springframework.http.HttpHeaders;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Response of a client that accepts gzip. The body is written as is, unless the handler enabled the
+ * compression with {@link #compressFrom(int)}: then it is held back until it reaches the minimum size
+ * and compressed from there, a smaller body is written as is once the response is finished.
+ * A non-blocking writer registering a write listener gets the body written as is.
+ */
+public class GzipResponseWrapper extends HttpServletResponseWrapper {
+    private int minSize = -1;
+    private long contentLength = -1;
+    private CompressingOutputStream outputStream;
+    private PrintWriter writer;
+
+    public GzipResponseWrapper(HttpServletResponse response) {
+        super(response);
+    }
+
+    /**
+     * A coding listed with q=0 is refused, gzip is accepted when it is listed, or covered by *, with a positive weight
+     */
+    public static boolean accepts(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = quality;
+            } else if (name.equals("*")) {
+                any = quality;
+            }
+        }
+        return gzip != null ? gzip > 0 : any != null && any > 0;
+    }
+
+    /**
+     * Compress the body from the given size on, must be called before the body is written
+     *
+     * @param minSize the minimum body size in bytes
+     */
+    public void compressFrom(int minSize) {
+        this.minSize = Math.max(0, minSize);
+    }
+
+    /**
+     * Write what is held back and end the gzip stream, called once the response is complete
+     */
+    public void finish() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (outputStream != null) {
+            outputStream.finish();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (outputStream == null) {
+            outputStream = new CompressingOutputStream();
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        // a body held back stays uncommitted, the encoding isn't decided yet
+        if (outputStream == null || outputStream.isDecided()) {
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        if (outputStream != null) {
+            outputStream.resetBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        contentLength = -1;
+        if (outputStream != null) {
+            outputStream.resetBuffer();
+        }
+    }
+
+    // the length of a body that may get compressed is only known once it is decided
+
+    @Override
+    public void setContentLength(int length) {
+        setContentLengthLong(length);
+    }
+
+    @Override
+    public void setContentLengthLong(long length) {
+        if (minSize < 0) {
+            super.setContentLengthLong(length);
+        } else {
+            contentLength = length;
+        }
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (!holdsContentLength(name, value)) {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (!holdsContentLength(name, value)) {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (!holdsContentLength(name, String.valueOf(value))) {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (!holdsContentLength(name, String.valueOf(value))) {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    private boolean holdsContentLength(String name, String value) {
+        if (minSize < 0 || !HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            return false;
+        }
+        contentLength = Long.parseLong(value.trim());
+        return true;
+    }
+
+    private class CompressingOutputStream extends ServletOutputStream {
+        private ByteArrayOutputStream heldBack = new ByteArrayOutputStream();
+        private ServletOutputStream sink;
+        private OutputStream target;
+        private boolean finished;
+
+        boolean isDecided() {
+            return target != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null) {
+                boolean small = contentLength >= 0 && contentLength < minSize;
+                if (minSize < 0 || small || getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+                    decide(false);
+                } else {
+                    heldBack.write(bytes, offset, length);
+                    if (heldBack.size() >= minSize) {
+                        decide(true);
+                    }
+                    return;
+                }
+            }
+            target.write(bytes, offset, length);
+        }
+
+        private void decide(boolean gzip) throws IOException {
+            HttpServletResponse response = (HttpServletResponse) getResponse();
+            if (gzip) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                sink = response.getOutputStream();
+                // flushed on every flush, so a streamed body keeps coming while it is compressed
+                target = new GZIPOutputStream(sink, true);
+            } else {
+                if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+                sink = response.getOutputStream();
+                target = sink;
+            }
+            heldBack.writeTo(target);
+            heldBack = null;
+        }
+
+        void resetBuffer() {
+            if (heldBack != null) {
+                heldBack.reset();
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (target == null) {
+                decide(false);
+            }
+            if (target instanceof GZIPOutputStream) {
+                ((GZIPOutputStream) target).finish();
+            }
+            target.flush();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return sink == null || sink.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // a non-blocking writer can't wait for the body to be held back and compressed, it is written as is
+            if (target == null) {
+                try {
+                    decide(false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            sink.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.flapkap.challenge.services.compression;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Wraps the responses of the clients that accept gzip in a {@link GzipResponseWrapper},
+ * the handler decides if its response is compressed, see {@link CompressedResponse}.
+ * An async response (a streamed export) is finished by the dispatch that completes it.
+ */
+public class ResponseCompressionFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // the async dispatch gets the response the request started with, already wrapped
+        GzipResponseWrapper wrapper = WebUtils.getNativeResponse(response, GzipResponseWrapper.class);
+        if (wrapper == null) {
+            if (!GzipResponseWrapper.accepts(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                filterChain.doFilter(request, response);
+                return;
+            }
+            wrapper = new GzipResponseWrapper(response);
+            filterChain.doFilter(request, wrapper);
+        } else {
+            filterChain.doFilter(request, response);
+        }
+
+        if (!request.isAsyncStarted()) {
+            wrapper.finish();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.flapkap.challenge.services.health;
+
+import com.flapkap.challenge.services.catalog.CatalogPageCache;
+import com.flapkap.challenge.services.inventory.InventoryPartitions;
+import com.flapkap.challenge.services.user.UserDetailsCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports how warm the in-process caches are. It never takes the node out of service,
+ * an idle node has cold caches and must still be routed traffic to warm them up.
+ */
+@Component
+@RequiredArgsConstructor
+public class CacheWarmthHealthIndicator extends AbstractHealthIndicator {
+    private final CatalogPageCache catalogPageCache;
+    private final UserDetailsCache userDetailsCache;
+    private final InventoryPartitions inventoryPartitions;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.up()
+                .withDetail("catalogPages", catalogPageCache.size())
+                .withDetail("userDetails", userDetailsCache.size())
+                .withDetail("inventoryPartitions", inventoryPartitions.size());
+    }
+}
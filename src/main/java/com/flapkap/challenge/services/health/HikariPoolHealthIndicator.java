@@ -0,0 +1,58 @@
+package com.flapkap.challenge.services.health;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Out of service while a connection pool is saturated: too many threads wait for a connection,
+ * or almost every connection is in use. Part of the load group, not of readiness: under a load spike
+ * every node saturates at once and taking them out of rotation would leave no node at all.
+ */
+@Component
+@RequiredArgsConstructor
+public class HikariPoolHealthIndicator extends AbstractHealthIndicator {
+    private final ObjectProvider<HikariDataSource> dataSources;
+
+    @Value("${health.pool.maxThreadsAwaiting:5}")
+    private int maxThreadsAwaiting;
+    @Value("${health.pool.maxSaturation:0.95}")
+    private double maxSaturation;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        boolean saturated = false;
+        for (HikariDataSource dataSource : dataSources) {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool == null) {
+                // not started yet, the first connection starts it
+                continue;
+            }
+
+            double saturation = (double) pool.getActiveConnections() / dataSource.getMaximumPoolSize();
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("active", pool.getActiveConnections());
+            details.put("idle", pool.getIdleConnections());
+            details.put("max", dataSource.getMaximumPoolSize());
+            details.put("threadsAwaiting", pool.getThreadsAwaitingConnection());
+            details.put("saturation", Math.round(saturation * 100) / 100.0);
+            builder.withDetail(dataSource.getPoolName(), details);
+
+            saturated |= pool.getThreadsAwaitingConnection() > maxThreadsAwaiting || saturation >= maxSaturation;
+        }
+
+        if (saturated) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+    }
+}
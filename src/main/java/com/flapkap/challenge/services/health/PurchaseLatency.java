@@ -0,0 +1,48 @@
+package com.flapkap.challenge.services.health;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of buyProduct, published as the vending.purchase timer with its 99th percentile
+ * over a sliding window of health.purchase.windowSeconds.
+ */
+@Component
+public class PurchaseLatency {
+    private final Timer timer;
+
+    public PurchaseLatency(MeterRegistry meterRegistry,
+                           @Value("${health.purchase.windowSeconds:60}") long windowSeconds) {
+        this.timer = Timer.builder("vending.purchase")
+                .description("Latency of the purchases")
+                .publishPercentiles(0.99)
+                .distributionStatisticExpiry(Duration.ofSeconds(windowSeconds))
+                .register(meterRegistry);
+    }
+
+    public void record(long nanos) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public long count() {
+        return timer.count();
+    }
+
+    /**
+     * @return the 99th percentile over the sliding window in milliseconds, 0 without purchases
+     */
+    public double p99Millis() {
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            if (percentile.percentile() == 0.99) {
+                return percentile.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0;
+    }
+}
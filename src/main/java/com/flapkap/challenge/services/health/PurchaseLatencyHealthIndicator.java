@@ -0,0 +1,34 @@
+package com.flapkap.challenge.services.health;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Out of service while the 99th percentile of the purchases is over health.purchase.maxP99Ms.
+ * Part of the load group, a slow fleet is scaled out rather than taken out of rotation.
+ */
+@Component
+@RequiredArgsConstructor
+public class PurchaseLatencyHealthIndicator extends AbstractHealthIndicator {
+    private final PurchaseLatency purchaseLatency;
+
+    @Value("${health.purchase.maxP99Ms:500}")
+    private double maxP99Ms;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        double p99 = purchaseLatency.p99Millis();
+        builder.withDetail("p99Ms", Math.round(p99 * 10) / 10.0)
+                .withDetail("maxP99Ms", maxP99Ms)
+                .withDetail("purchases", purchaseLatency.count());
+
+        if (p99 > maxP99Ms) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.flapkap.challenge.services.health;
+
+import com.flapkap.challenge.services.journal.JournalService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * The backlog of the asynchronous writers: the sales rollups and the journal group commit.
+ * Out of service when one of them is over health.queues.maxDepth, the node is falling behind its writes.
+ * Part of the load group, the node still serves its requests meanwhile.
+ */
+@Component
+public class QueueDepthHealthIndicator extends AbstractHealthIndicator {
+    private final ThreadPoolTaskExecutor salesExecutor;
+    private final JournalService journalService;
+
+    @Value("${health.queues.maxDepth:10000}")
+    private int maxDepth;
+
+    public QueueDepthHealthIndicator(@Qualifier("salesExecutor") ThreadPoolTaskExecutor salesExecutor,
+                                     JournalService journalService) {
+        this.salesExecutor = salesExecutor;
+        this.journalService = journalService;
+    }
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        int sales = salesExecutor.getThreadPoolExecutor().getQueue().size();
+        int journal = journalService.getQueueDepth();
+        builder.withDetail("sales", sales)
+                .withDetail("journal", journal)
+                .withDetail("maxDepth", maxDepth);
+
+        if (Math.max(sales, journal) > maxDepth) {
+            builder.outOfService();
+        } else {
+            builder.up();
+        }
+    }
+}
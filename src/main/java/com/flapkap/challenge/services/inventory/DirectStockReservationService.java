@@ -0,0 +1,33 @@
+package com.flapkap.challenge.services.inventory;
+
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Updates the product row of every purchase, the product version arbitrates between the nodes.
+ */
+@Service
+@ConditionalOnProperty(value = "inventory.reservation.mode", havingValue = "direct", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DirectStockReservationService implements StockReservationService {
+    private final ProductRepository productRepository;
+
+    @Override
+    public void reserve(Product product, int quantity) throws BadRequestException {
+        // check if the amount is greater than the amount available
+        if (quantity > product.getAmountAvailable()) {
+            throw Rejections.NOT_ENOUGH_PRODUCTS;
+        }
+
+        // update the product
+        product.setAmountAvailable(product.getAmountAvailable() - quantity);
+
+        // save the product
+        productRepository.save(product);
+    }
+}
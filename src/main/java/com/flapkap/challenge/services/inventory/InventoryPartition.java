@@ -0,0 +1,56 @@
+package com.flapkap.challenge.services.inventory;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The inventory partition of a single seller. Each partition owns its own lock stripe, so purchases of
+ * products that belong to different sellers never wait on each other.
+ */
+public class InventoryPartition {
+    @Getter
+    private final Long sellerId;
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final AtomicLong contended = new AtomicLong();
+
+    public InventoryPartition(Long sellerId, int stripeCount) {
+        this.sellerId = sellerId;
+        // round the stripe count up to a power of two so the stripe index is a simple mask
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Lock the stripe that guards the given product, counting the acquisitions that had to wait
+     *
+     * @param productId the product id
+     * @return the acquired lock, the caller must unlock it
+     */
+    public ReentrantLock lock(Long productId) {
+        ReentrantLock lock = stripes[spread(productId) & mask];
+        if (!lock.tryLock()) {
+            contended.incrementAndGet();
+            lock.lock();
+        }
+        return lock;
+    }
+
+    /**
+     * @return the number of lock acquisitions in this partition that had to wait for another purchase
+     */
+    public long getContendedCount() {
+        return contended.get();
+    }
+
+    private static int spread(Long productId) {
+        int h = productId.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,84 @@
+package com.flapkap.challenge.services.inventory;
+
+import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Routes inventory mutations to per-seller {@link InventoryPartition}s.
+ * A busy seller only contends with itself, the other sellers keep their own lock stripes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryPartitions {
+    private final ProductRepository productRepository;
+    private final Map<Long, InventoryPartition> partitions = new ConcurrentHashMap<>();
+    // the seller of a product never changes, so the routing entry can be kept until the product is deleted
+    private final Map<Long, Long> productSellers = new ConcurrentHashMap<>();
+
+    @Value("${inventory.partitions.lockStripes:16}")
+    private int lockStripes;
+
+    /**
+     * Run an inventory mutation while holding the lock of the product inside its seller partition
+     *
+     * @param productId the product id
+     * @param action the mutation to run
+     * @return the result of the mutation
+     * @throws EntityNotFoundException if the product does not exist
+     */
+    public <T> T withProductLock(Long productId, Supplier<T> action) throws EntityNotFoundException {
+        ReentrantLock lock = partitionOf(productId).lock(productId);
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Find the partition that owns a product
+     *
+     * @param productId the product id
+     * @return the seller partition {@link InventoryPartition}
+     * @throws EntityNotFoundException if the product does not exist
+     */
+    public InventoryPartition partitionOf(Long productId) throws EntityNotFoundException {
+        Long sellerId = productSellers.get(productId);
+        if (sellerId == null) {
+            sellerId = productRepository.findSellerIdById(productId)
+                    .orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
+            productSellers.put(productId, sellerId);
+        }
+        return partitions.computeIfAbsent(sellerId, id -> {
+            log.debug("Creating inventory partition for seller: {}", id);
+            return new InventoryPartition(id, lockStripes);
+        });
+    }
+
+    /**
+     * Forget the routing entry of a deleted product
+     *
+     * @param productId the product id
+     */
+    public void evict(Long productId) {
+        productSellers.remove(productId);
+    }
+
+    /**
+     * @return the number of seller partitions currently held in memory
+     */
+    public int size() {
+        return partitions.size();
+    }
+}
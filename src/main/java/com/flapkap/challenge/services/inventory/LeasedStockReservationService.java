@@ -0,0 +1,143 @@
+package com.flapkap.challenge.services.inventory;
+
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.entities.StockLease;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.ProductRepository;
+import com.flapkap.challenge.repositories.StockLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every node leases chunks of stock per product from the product row and sells from its own lease,
+ * so concurrent purchases on different nodes update different rows instead of the same hot product row.
+ * Both the lease and the product are taken with conditional updates, the stock can't be oversold.
+ * A lease expires after inventory.reservation.leaseTtlMs, any node then returns its unsold stock to the product,
+ * the leases of a node that stops are returned right away.
+ * While leases are outstanding, the product amountAvailable only counts the stock that is not leased.
+ */
+@Service
+@ConditionalOnProperty(value = "inventory.reservation.mode", havingValue = "leased")
+// the expired leases of the other nodes are returned even before the first purchase on this node
+@Lazy(false)
+@Slf4j
+public class LeasedStockReservationService implements StockReservationService {
+    private final ProductRepository productRepository;
+    private final StockLeaseRepository stockLeaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String nodeId;
+    // the current lease of this node per product, the purchases of a product are already serialized on the node
+    private final Map<Long, Long> currentLeases = new ConcurrentHashMap<>();
+
+    @Value("${inventory.reservation.leaseChunk:5}")
+    private int leaseChunk;
+    @Value("${inventory.reservation.leaseTtlMs:30000}")
+    private long leaseTtlMs;
+    @Value("${inventory.reservation.expiryGraceMs:5000}")
+    private long expiryGraceMs;
+
+    public LeasedStockReservationService(ProductRepository productRepository,
+                                         StockLeaseRepository stockLeaseRepository,
+                                         TransactionTemplate transactionTemplate,
+                                         @Value("${inventory.reservation.nodeId:}") String nodeId) {
+        this.productRepository = productRepository;
+        this.stockLeaseRepository = stockLeaseRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        log.info("Stock leases are held as node {}", this.nodeId);
+    }
+
+    @Override
+    public void reserve(Product product, int quantity) throws BadRequestException {
+        Long productId = product.getId();
+        LocalDateTime now = LocalDateTime.now();
+
+        // sell from the current lease of the node
+        Long leaseId = currentLeases.get(productId);
+        if (leaseId != null) {
+            if (stockLeaseRepository.consume(leaseId, nodeId, quantity, now) == 1) {
+                return;
+            }
+            // the lease is too small or expired, its remaining stock goes back before a new chunk is taken
+            returnLease(leaseId);
+            currentLeases.remove(productId);
+        }
+
+        // lease a new chunk, or at least the quantity of the purchase when less stock is left
+        int chunk = Math.max(quantity, leaseChunk);
+        int leased = 0;
+        if (productRepository.takeStock(productId, chunk) == 1) {
+            leased = chunk;
+        } else if (chunk > quantity && productRepository.takeStock(productId, quantity) == 1) {
+            leased = quantity;
+        }
+        if (leased == 0) {
+            throw Rejections.NOT_ENOUGH_PRODUCTS;
+        }
+
+        StockLease lease = stockLeaseRepository.save(StockLease.builder()
+                .productId(productId)
+                .nodeId(nodeId)
+                .quantity(leased - quantity)
+                .expiresAt(now.plusNanos(leaseTtlMs * 1_000_000))
+                .build());
+        currentLeases.put(productId, lease.getId());
+    }
+
+    @Override
+    public int available(Product product) {
+        // the product entity is not refreshed by the conditional updates, the stock is the product row plus every lease
+        int unleased = productRepository.findAmountAvailableById(product.getId()).orElse(0);
+        return unleased + (int) stockLeaseRepository.sumQuantityByProductId(product.getId());
+    }
+
+    /**
+     * Return the unsold stock of the leases expired on any node, including the nodes that are gone
+     */
+    @Scheduled(fixedDelayString = "${inventory.reservation.reapIntervalMs:10000}")
+    public void returnExpiredLeases() {
+        // the grace period covers the clock skew between the nodes, a lease is never consumed after its expiry
+        LocalDateTime cutoff = LocalDateTime.now().minusNanos(expiryGraceMs * 1_000_000);
+        returnLeases(stockLeaseRepository.findByExpiresAtBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void returnNodeLeases() {
+        returnLeases(stockLeaseRepository.findByNodeId(nodeId));
+        currentLeases.clear();
+    }
+
+    private void returnLeases(List<StockLease> leases) {
+        for (StockLease lease : leases) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> returnLease(lease.getId()));
+                currentLeases.remove(lease.getProductId(), lease.getId());
+            } catch (RuntimeException e) {
+                log.warn("Returning stock lease {} failed, it is retried on the next run", lease.getId(), e);
+            }
+        }
+    }
+
+    private void returnLease(Long leaseId) {
+        stockLeaseRepository.findByIdForUpdate(leaseId).ifPresent(lease -> {
+            if (lease.getQuantity() > 0) {
+                productRepository.returnStock(lease.getProductId(), lease.getQuantity());
+            }
+            stockLeaseRepository.delete(lease);
+        });
+    }
+}
@@ -0,0 +1,37 @@
+package com.flapkap.challenge.services.inventory;
+
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.exceptions.BadRequestException;
+
+/**
+ * Takes the stock of a purchase, selected with inventory.reservation.mode:
+ * "direct" updates the product row of every purchase, "leased" sells from stock chunks leased by the node.
+ * */
+public interface StockReservationService {
+
+    /**
+     * Take the stock of a purchase, must run inside the purchase transaction
+     *
+     * @param product the product, loaded in the purchase transaction
+     * @param quantity the quantity to take
+     * @throws BadRequestException if there is not enough stock
+     * */
+    void reserve(Product product, int quantity) throws BadRequestException;
+
+    /**
+     * Return the stock of the product that is left to sell, must run inside the purchase transaction
+     *
+     * @param product the product, loaded in the purchase transaction
+     * @return the stock left to sell
+     * */
+    default int available(Product product) {
+        return product.getAmountAvailable();
+    }
+
+    /**
+     * @return true if the stock is the product stock, false if it is held somewhere else, e.g. in a machine slot
+     * */
+    default boolean takesProductStock() {
+        return true;
+    }
+}
@@ -0,0 +1,24 @@
+package com.flapkap.challenge.services.journal;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A single entry of the transaction journal.
+ * The meaning of the numbers depends on the type:
+ * DEPOSIT credits amount to the user, RESET clears the user balance,
+ * PURCHASE takes quantity items of the product and charges amount to the user,
+ * STOCK_SET sets the stock of the product to quantity,
+ * SLOT_PURCHASE charges amount to the user for quantity items taken from a machine slot, the product stock is untouched.
+ */
+@Data
+@Builder
+public class JournalEvent {
+    private long sequence;
+    private long timestamp;
+    private JournalEventType type;
+    private long userId;
+    private long productId;
+    private int quantity;
+    private int amount;
+}
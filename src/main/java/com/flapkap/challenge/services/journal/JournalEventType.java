@@ -0,0 +1,11 @@
+package com.flapkap.challenge.services.journal;
+
+public enum JournalEventType {
+    DEPOSIT,
+    RESET,
+    PURCHASE,
+    STOCK_SET,
+    SLOT_PURCHASE,
+    BALANCE_SET,
+    PRODUCT_DELETE
+}
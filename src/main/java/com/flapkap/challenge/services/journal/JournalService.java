@@ -0,0 +1,45 @@
+package com.flapkap.challenge.services.journal;
+
+import java.util.function.Supplier;
+
+public interface JournalService {
+
+    /**
+     * Append an event to the journal once the current transaction commits.
+     * Without an active transaction the event is appended right away.
+     * The call returns when the event is durable on disk, inside {@link #awaitingDurability(Supplier)}
+     * the wait is left to the end of the action.
+     *
+     * @param event the event to append, the sequence and timestamp are assigned by the journal
+     * */
+    void record(JournalEvent event);
+
+    /**
+     * Run an action that holds a lock while it commits. The events it records are queued in commit order,
+     * but the wait until they are durable happens after the action returned and released its lock.
+     *
+     * @param action the action to run
+     * @return the result of the action
+     * */
+    <T> T awaitingDurability(Supplier<T> action);
+
+    /**
+     * Return the balances and stock derived from every event appended so far
+     *
+     * @return a copy of the derived state {@link JournalState}
+     * */
+    JournalState getState();
+
+    /**
+     * Rebuild the derived state from the latest snapshot and the journal segments written after it
+     *
+     * @return the replayed state {@link JournalState}
+     * */
+    JournalState replay();
+
+    /**
+     * @return the number of events waiting for the next group commit
+     * */
+    int getQueueDepth();
+
+}
@@ -0,0 +1,368 @@
+package com.flapkap.challenge.services.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of deposits, resets, purchases and stock changes.
+ * Events are written sequentially into fixed size records of memory-mapped segment files by a single
+ * writer thread. The writer drains every pending event into one batch and forces the segment once per
+ * batch (group commit), so concurrent purchases share the cost of making their events durable.
+ * The balances and stock derived from the events are snapshotted every journal.snapshotEvery events,
+ * a replay starts from the latest snapshot and only reads the events written after it.
+ */
+@Service
+@Slf4j
+public class JournalServiceImpl implements JournalService {
+    // sequence, timestamp, type, user id, product id, quantity, amount and the crc of the previous fields
+    static final int RECORD_SIZE = 8 + 8 + 4 + 8 + 8 + 4 + 4 + 4;
+    private static final int CHECKSUMMED_SIZE = RECORD_SIZE - 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    @Value("${journal.enabled:false}")
+    private boolean enabled;
+    @Value("${journal.directory:journal}")
+    private String directory;
+    @Value("${journal.segmentSizeBytes:67108864}")
+    private int segmentSize;
+    @Value("${journal.snapshotEvery:10000}")
+    private int snapshotEvery;
+    @Value("${journal.maxBatchSize:512}")
+    private int maxBatchSize;
+    @Value("${journal.appendTimeoutMs:2000}")
+    private long appendTimeoutMs;
+
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    // the appends queued by the current thread inside awaitingDurability, null outside of it
+    private final ThreadLocal<List<PendingAppend>> deferred = new ThreadLocal<>();
+    private final ByteBuffer recordBuffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private JournalState state = new JournalState();
+    private MappedByteBuffer segment;
+    private long sequence;
+    private long eventsSinceSnapshot;
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        Files.createDirectories(Paths.get(directory));
+        state = replay();
+        sequence = state.getSequence();
+        openSegmentForAppend();
+
+        running = true;
+        writer = new Thread(this::writeLoop, "journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Journal started in {} at sequence {}", directory, sequence);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(appendTimeoutMs);
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void record(JournalEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // only committed changes are journaled
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    List<PendingAppend> appends = deferred.get();
+                    if (appends != null) {
+                        appends.add(enqueue(event));
+                    } else {
+                        await(enqueue(event));
+                    }
+                }
+            });
+        } else {
+            await(enqueue(event));
+        }
+    }
+
+    @Override
+    public <T> T awaitingDurability(Supplier<T> action) {
+        if (!enabled || deferred.get() != null) {
+            return action.get();
+        }
+
+        List<PendingAppend> appends = new ArrayList<>(2);
+        deferred.set(appends);
+        try {
+            return action.get();
+        } finally {
+            deferred.remove();
+            appends.forEach(this::await);
+        }
+    }
+
+    @Override
+    public JournalState getState() {
+        synchronized (this) {
+            return state.copy();
+        }
+    }
+
+    @Override
+    public JournalState replay() {
+        JournalState replayed = loadLatestSnapshot();
+        try {
+            for (Path path : files(SEGMENT_PREFIX)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    JournalEvent event;
+                    while ((event = readRecord(buffer)) != null) {
+                        if (event.getSequence() > replayed.getSequence()) {
+                            replayed.apply(event);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay the journal", e);
+        }
+        return replayed;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    private PendingAppend enqueue(JournalEvent event) {
+        PendingAppend pending = new PendingAppend(event, new CompletableFuture<>());
+        queue.add(pending);
+        return pending;
+    }
+
+    private void await(PendingAppend pending) {
+        try {
+            pending.durable.get(appendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the database is the source of truth for the purchase, a journal failure must not fail the request
+            log.error("Cannot append {} event to the journal: {}", pending.event.getType(), e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+
+                writeBatch(batch);
+                batch.forEach(pending -> pending.durable.complete(null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException | RuntimeException e) {
+                log.error("Journal group commit of {} events failed", batch.size(), e);
+                batch.forEach(pending -> pending.durable.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<PendingAppend> batch) throws IOException {
+        long now = System.currentTimeMillis();
+        for (PendingAppend pending : batch) {
+            JournalEvent event = pending.event;
+            event.setSequence(++sequence);
+            event.setTimestamp(now);
+            if (segment.remaining() < RECORD_SIZE) {
+                segment.force();
+                createSegment(event.getSequence());
+            }
+            writeRecord(event);
+        }
+
+        // one force for the whole batch
+        segment.force();
+
+        synchronized (this) {
+            batch.forEach(pending -> state.apply(pending.event));
+        }
+
+        eventsSinceSnapshot += batch.size();
+        if (eventsSinceSnapshot >= snapshotEvery) {
+            writeSnapshot();
+            eventsSinceSnapshot = 0;
+        }
+    }
+
+    private void writeRecord(JournalEvent event) {
+        recordBuffer.clear();
+        recordBuffer.putLong(event.getSequence());
+        recordBuffer.putLong(event.getTimestamp());
+        recordBuffer.putInt(event.getType().ordinal());
+        recordBuffer.putLong(event.getUserId());
+        recordBuffer.putLong(event.getProductId());
+        recordBuffer.putInt(event.getQuantity());
+        recordBuffer.putInt(event.getAmount());
+        crc.reset();
+        crc.update(recordBuffer.array(), 0, CHECKSUMMED_SIZE);
+        recordBuffer.putInt((int) crc.getValue());
+        recordBuffer.flip();
+        segment.put(recordBuffer);
+    }
+
+    /**
+     * Read the next record of a segment
+     *
+     * @return the event, or null at the end of the written part of the segment
+     */
+    private JournalEvent readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < RECORD_SIZE) {
+            return null;
+        }
+
+        byte[] bytes = new byte[RECORD_SIZE];
+        buffer.get(bytes);
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        long recordSequence = in.getLong(0);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, CHECKSUMMED_SIZE);
+        if (recordSequence == 0 || in.getInt(CHECKSUMMED_SIZE) != (int) checksum.getValue()) {
+            // preallocated space or a record torn by a crash
+            buffer.position(buffer.position() - RECORD_SIZE);
+            return null;
+        }
+
+        return JournalEvent.builder()
+                .sequence(recordSequence)
+                .timestamp(in.getLong(8))
+                .type(JournalEventType.values()[in.getInt(16)])
+                .userId(in.getLong(20))
+                .productId(in.getLong(28))
+                .quantity(in.getInt(36))
+                .amount(in.getInt(40))
+                .build();
+    }
+
+    private void openSegmentForAppend() throws IOException {
+        List<Path> segments = files(SEGMENT_PREFIX);
+        if (segments.isEmpty()) {
+            createSegment(sequence + 1);
+            return;
+        }
+
+        Path last = segments.get(segments.size() - 1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        JournalEvent event;
+        while ((event = readRecord(segment)) != null) {
+            sequence = Math.max(sequence, event.getSequence());
+        }
+    }
+
+    private void createSegment(long firstSequence) throws IOException {
+        Path path = Paths.get(directory, String.format("%s%020d.log", SEGMENT_PREFIX, firstSequence));
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the mapping stays valid after the channel is closed
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        log.debug("Opened journal segment {}", path);
+    }
+
+    private void writeSnapshot() throws IOException {
+        JournalState snapshot = getState();
+        Path target = Paths.get(directory, String.format("%s%020d.bin", SNAPSHOT_PREFIX, snapshot.getSequence()));
+        Path temporary = Paths.get(directory, target.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            snapshot.writeTo(out);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+
+        // older snapshots are no longer needed for a replay
+        for (Path path : files(SNAPSHOT_PREFIX)) {
+            if (!path.equals(target)) {
+                Files.deleteIfExists(path);
+            }
+        }
+        log.info("Journal snapshot written at sequence {}", snapshot.getSequence());
+    }
+
+    private JournalState loadLatestSnapshot() {
+        try {
+            List<Path> snapshots = files(SNAPSHOT_PREFIX);
+            if (snapshots.isEmpty()) {
+                return new JournalState();
+            }
+            Path latest = snapshots.get(snapshots.size() - 1);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest)))) {
+                return JournalState.readFrom(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load the journal snapshot", e);
+        }
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        Path root = Paths.get(directory);
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> paths = Files.list(root)) {
+            return paths.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && !name.endsWith(".tmp");
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingAppend {
+        private final JournalEvent event;
+        private final CompletableFuture<Void> durable;
+    }
+}
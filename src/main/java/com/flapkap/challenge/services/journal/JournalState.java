@@ -0,0 +1,94 @@
+package com.flapkap.challenge.services.journal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The balances and stock derived from the journal up to a sequence number.
+ * Only the journal writer thread mutates it, readers get a {@link #copy()}.
+ */
+public class JournalState {
+    private final Map<Long, Integer> balances = new HashMap<>();
+    private final Map<Long, Integer> stock = new HashMap<>();
+    private long sequence;
+
+    public void apply(JournalEvent event) {
+        switch (event.getType()) {
+            case DEPOSIT:
+                balances.merge(event.getUserId(), event.getAmount(), Integer::sum);
+                break;
+            case RESET:
+                balances.put(event.getUserId(), 0);
+                break;
+            case PURCHASE:
+                balances.merge(event.getUserId(), -event.getAmount(), Integer::sum);
+                stock.merge(event.getProductId(), -event.getQuantity(), Integer::sum);
+                break;
+            case SLOT_PURCHASE:
+                balances.merge(event.getUserId(), -event.getAmount(), Integer::sum);
+                break;
+            case STOCK_SET:
+                stock.put(event.getProductId(), event.getQuantity());
+                break;
+            case BALANCE_SET:
+                balances.put(event.getUserId(), event.getAmount());
+                break;
+            case PRODUCT_DELETE:
+                stock.remove(event.getProductId());
+                break;
+        }
+        sequence = event.getSequence();
+    }
+
+    public int getBalance(long userId) {
+        return balances.getOrDefault(userId, 0);
+    }
+
+    public int getStock(long productId) {
+        return stock.getOrDefault(productId, 0);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public JournalState copy() {
+        JournalState copy = new JournalState();
+        copy.balances.putAll(balances);
+        copy.stock.putAll(stock);
+        copy.sequence = sequence;
+        return copy;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(sequence);
+        writeMap(out, balances);
+        writeMap(out, stock);
+    }
+
+    public static JournalState readFrom(DataInputStream in) throws IOException {
+        JournalState state = new JournalState();
+        state.sequence = in.readLong();
+        readMap(in, state.balances);
+        readMap(in, state.stock);
+        return state;
+    }
+
+    private static void writeMap(DataOutputStream out, Map<Long, Integer> map) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<Long, Integer> entry : map.entrySet()) {
+            out.writeLong(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+    }
+
+    private static void readMap(DataInputStream in, Map<Long, Integer> map) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            map.put(in.readLong(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.flapkap.challenge.services.machine;
+
+import com.flapkap.challenge.dto.TransactionDTO;
+import com.flapkap.challenge.dto.machine.MachineDTO;
+import com.flapkap.challenge.dto.machine.MachineSlotDTO;
+import com.flapkap.challenge.dto.machine.RestockDTO;
+import com.flapkap.challenge.dto.machine.RestockResultDTO;
+import com.flapkap.challenge.entities.Machine;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+public interface MachineService {
+
+    /**
+     * Return all machines with pagination
+     *
+     * @return a list of all machines {@link MachineDTO}
+     * */
+    Page<MachineDTO> getAllMachines(Pageable pageable);
+
+    /**
+     * Create a new machine
+     *
+     * @param machine object that contains the machine information
+     * @return the created machine {@link MachineDTO}
+     * @throws BadRequestException if a machine with the same name already exists
+     * */
+    MachineDTO createMachine(Machine machine) throws BadRequestException;
+
+    /**
+     * Return the slots of a machine and the products they hold
+     *
+     * @param machineId the machine id
+     * @return the slots of the machine {@link MachineSlotDTO} in slot code order
+     * @throws EntityNotFoundException if the machine does not exist
+     * */
+    List<MachineSlotDTO> getSlots(Long machineId) throws EntityNotFoundException;
+
+    /**
+     * Put a product of the authenticated seller in a slot of a machine, the slot is created if it doesn't exist.
+     * A slot that gets another product starts empty.
+     *
+     * @param machineId the machine id
+     * @param slotCode the slot code
+     * @param productId the product id
+     * @param capacity the number of items the slot holds when full, null to keep the current capacity
+     * @return the slot {@link MachineSlotDTO}
+     * @throws EntityNotFoundException if the machine or the product does not exist
+     * @throws BadRequestException if the capacity is not positive
+     * */
+    MachineSlotDTO assignSlot(Long machineId, String slotCode, Long productId, Integer capacity) throws EntityNotFoundException, BadRequestException;
+
+    /**
+     * Apply the stock changes of many slots of a machine in one batch, names and prices are not touched.
+     * A slot is kept between zero and its capacity, slots that don't hold a product of the seller are skipped.
+     *
+     * @param machineId the machine id
+     * @param changes the stock change of each slot
+     * @return the number of updated slots and the skipped ones {@link RestockResultDTO}
+     * @throws EntityNotFoundException if the machine does not exist
+     * */
+    RestockResultDTO restock(Long machineId, List<RestockDTO> changes) throws EntityNotFoundException;
+
+    /**
+     * Deposit a coin at a machine, the coin must be accepted by the machine
+     *
+     * @param machineId the machine id
+     * @param amount the amount of money to deposit
+     * @throws EntityNotFoundException if the machine does not exist
+     * @throws BadRequestException if the amount is not a coin of the machine
+     * */
+    void depositMoney(Long machineId, Integer amount) throws EntityNotFoundException, BadRequestException;
+
+    /**
+     * Buy the product of a slot of a machine
+     *
+     * @param machineId the machine id
+     * @param slotCode the slot code
+     * @param productAmount the amount of the product
+     * @return the transaction {@link TransactionDTO}, the change in the coins of the machine
+     * @throws EntityNotFoundException if the machine or the slot does not exist
+     * @throws BadRequestException if the slot is empty, the amount is invalid or the user not have enough money
+     * */
+    TransactionDTO buyProduct(Long machineId, String slotCode, Integer productAmount) throws EntityNotFoundException, BadRequestException;
+
+}
@@ -0,0 +1,190 @@
+package com.flapkap.challenge.services.machine;
+
+import com.flapkap.challenge.dto.TransactionDTO;
+import com.flapkap.challenge.dto.machine.MachineDTO;
+import com.flapkap.challenge.dto.machine.MachineSlotDTO;
+import com.flapkap.challenge.dto.machine.RestockDTO;
+import com.flapkap.challenge.dto.machine.RestockResultDTO;
+import com.flapkap.challenge.entities.Machine;
+import com.flapkap.challenge.entities.MachineSlot;
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.events.SlotStockChangedEvent;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.MachineRepository;
+import com.flapkap.challenge.repositories.MachineSlotRepository;
+import com.flapkap.challenge.repositories.ProductRepository;
+import com.flapkap.challenge.services.coins.Denominations;
+import com.flapkap.challenge.services.product.ProductService;
+import com.flapkap.challenge.services.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MachineServiceImpl implements MachineService {
+    // clamped between empty and full, a seller only restocks the slots holding its products
+    private static final String RESTOCK_SQL = "UPDATE machine_slots SET quantity = LEAST(capacity, GREATEST(0, quantity + ?)) " +
+            "WHERE machine_id = ? AND slot_code = ? " +
+            "AND product_id IN (SELECT id FROM products WHERE seller_id = ?)";
+
+    private final MachineRepository machineRepository;
+    private final MachineSlotRepository machineSlotRepository;
+    private final ProductRepository productRepository;
+    private final MachineStateCache machineStateCache;
+    private final ProductService productService;
+    private final UserService userService;
+    private final Denominations denominations;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<MachineDTO> getAllMachines(Pageable pageable) {
+        return machineRepository.findAll(pageable).map(Machine::toDTO);
+    }
+
+    @Override
+    public MachineDTO createMachine(Machine machine) throws BadRequestException {
+        // check if the machine already exists
+        if (machineRepository.findByName(machine.getName()).isPresent()) {
+            throw Rejections.MACHINE_EXISTS;
+        }
+
+        Machine savedMachine = machineRepository.save(machine);
+        log.info("Machine has been created: {}", savedMachine.getId());
+        return savedMachine.toDTO();
+    }
+
+    @Override
+    public List<MachineSlotDTO> getSlots(Long machineId) throws EntityNotFoundException {
+        return stateOf(machineId).toDTOs();
+    }
+
+    @Override
+    @Transactional
+    public MachineSlotDTO assignSlot(Long machineId, String slotCode, Long productId, Integer capacity) throws EntityNotFoundException, BadRequestException {
+        // check if the capacity is positive
+        if (capacity != null && capacity <= 0) {
+            throw Rejections.CAPACITY_NOT_POSITIVE;
+        }
+
+        Machine machine = machineRepository.findById(machineId).orElseThrow(() -> Rejections.MACHINE_NOT_FOUND);
+        Product product = productRepository.findById(productId).orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
+
+        // a seller can only stock its own products
+        User user = userService.getCurrentUser();
+        if (!Objects.equals(product.getSeller().getId(), user.getId())) {
+            throw Rejections.PRODUCT_NOT_FOUND;
+        }
+
+        // the price must be payable in the coins of the machine
+        denominations.forMachine(machineId).checkCost(product.getCost());
+
+        MachineSlot slot = machineSlotRepository.findByMachineIdAndSlotCode(machineId, slotCode)
+                .orElseGet(() -> MachineSlot.builder().machine(machine).slotCode(slotCode).build());
+        // the items of the previous product are taken out with it
+        if (slot.getProduct() == null || !Objects.equals(slot.getProduct().getId(), productId)) {
+            slot.setQuantity(0);
+        }
+        slot.setProduct(product);
+        if (capacity != null) {
+            slot.setCapacity(capacity);
+            slot.setQuantity(Math.min(slot.getQuantity(), capacity));
+        }
+        machineSlotRepository.save(slot);
+        eventPublisher.publishEvent(SlotStockChangedEvent.builder().machineId(machineId).build());
+
+        return MachineSlotDTO.builder()
+                .slotCode(slotCode)
+                .capacity(slot.getCapacity())
+                .quantity(slot.getQuantity())
+                .productId(product.getId())
+                .productName(product.getProductName())
+                .cost(product.getCost())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public RestockResultDTO restock(Long machineId, List<RestockDTO> changes) throws EntityNotFoundException {
+        if (!machineRepository.existsById(machineId)) {
+            throw Rejections.MACHINE_NOT_FOUND;
+        }
+        if (changes.isEmpty()) {
+            return RestockResultDTO.builder().skipped(List.of()).build();
+        }
+        Long sellerId = userService.getCurrentUser().getId();
+
+        // one prepared statement sent as a single batch, only the quantities are written
+        int[] counts = jdbcTemplate.batchUpdate(RESTOCK_SQL, changes, changes.size(), (statement, change) -> {
+            statement.setInt(1, change.getDelta());
+            statement.setLong(2, machineId);
+            statement.setString(3, change.getSlotCode());
+            statement.setLong(4, sellerId);
+        })[0];
+
+        int updated = 0;
+        List<String> skipped = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            // drivers rewriting the batch into one statement don't report the count of each row
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                updated++;
+            } else {
+                skipped.add(changes.get(i).getSlotCode());
+            }
+        }
+        eventPublisher.publishEvent(SlotStockChangedEvent.builder().machineId(machineId).build());
+        log.info("Machine {} restocked: {} slots updated, {} skipped", machineId, updated, skipped.size());
+
+        return RestockResultDTO.builder()
+                .updated(updated)
+                .skipped(skipped)
+                .build();
+    }
+
+    @Override
+    public void depositMoney(Long machineId, Integer amount) throws EntityNotFoundException, BadRequestException {
+        stateOf(machineId);
+        userService.depositMoney(amount, denominations.forMachine(machineId));
+    }
+
+    @Override
+    public TransactionDTO buyProduct(Long machineId, String slotCode, Integer productAmount) throws EntityNotFoundException, BadRequestException {
+        // the slot is read from the database, the cached machine state may lag behind another node
+        MachineSlotRepository.SlotProduct slot = machineSlotRepository.findSlotProduct(machineId, slotCode)
+                .orElseThrow(() -> machineRepository.existsById(machineId) ? Rejections.SLOT_NOT_FOUND : Rejections.MACHINE_NOT_FOUND);
+        if (slot.getProductId() == null) {
+            throw Rejections.SLOT_EMPTY;
+        }
+
+        // the items are taken from the slot only while it still holds the product that is charged,
+        // the change is paid in the coins of the machine
+        SlotStockReservation stock = new SlotStockReservation(machineSlotRepository, eventPublisher,
+                machineId, slot.getId(), slotCode);
+        return productService.buyProduct(slot.getProductId(), productAmount, denominations.forMachine(machineId), stock);
+    }
+
+    private MachineState stateOf(Long machineId) throws EntityNotFoundException {
+        return machineStateCache.get(machineId, () -> {
+            if (!machineRepository.existsById(machineId)) {
+                throw Rejections.MACHINE_NOT_FOUND;
+            }
+            return MachineState.of(machineId, machineSlotRepository.findByMachineIdWithProduct(machineId));
+        });
+    }
+}
@@ -0,0 +1,87 @@
+package com.flapkap.challenge.services.machine;
+
+import com.flapkap.challenge.dto.machine.MachineSlotDTO;
+import com.flapkap.challenge.entities.MachineSlot;
+import com.flapkap.challenge.entities.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The immutable in-memory state of one machine: its planogram and the products the slots hold.
+ * A change is applied by building a new state, readers never see a half updated machine.
+ * It only serves the listings, a purchase reads its slot from the database.
+ */
+public final class MachineState {
+    private final Long machineId;
+    private final Map<String, MachineSlotDTO> slots;
+
+    private MachineState(Long machineId, Map<String, MachineSlotDTO> slots) {
+        this.machineId = machineId;
+        this.slots = slots;
+    }
+
+    /**
+     * @param machineId the machine id
+     * @param slots the slots of the machine with their products loaded
+     * @return the state of the machine
+     */
+    public static MachineState of(Long machineId, List<MachineSlot> slots) {
+        Map<String, MachineSlotDTO> dtos = new LinkedHashMap<>();
+        for (MachineSlot slot : slots) {
+            Product product = slot.getProduct();
+            dtos.put(slot.getSlotCode(), MachineSlotDTO.builder()
+                    .slotCode(slot.getSlotCode())
+                    .capacity(slot.getCapacity())
+                    .quantity(slot.getQuantity())
+                    .productId(product == null ? null : product.getId())
+                    .productName(product == null ? null : product.getProductName())
+                    .cost(product == null ? null : product.getCost())
+                    .build());
+        }
+        return new MachineState(machineId, Collections.unmodifiableMap(dtos));
+    }
+
+    public Long getMachineId() {
+        return machineId;
+    }
+
+    /**
+     * @param productId the product id
+     * @return true if a slot of the machine holds the product
+     */
+    public boolean holds(Long productId) {
+        for (MachineSlotDTO slot : slots.values()) {
+            if (Objects.equals(slot.getProductId(), productId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param slotCode the slot code
+     * @param delta the quantity added to the slot, negative for a purchase
+     * @return the state with the new slot quantity, this state if the machine has no such slot
+     */
+    public MachineState withSlotQuantity(String slotCode, int delta) {
+        MachineSlotDTO slot = slots.get(slotCode);
+        if (slot == null) {
+            return this;
+        }
+        Map<String, MachineSlotDTO> updated = new LinkedHashMap<>(slots);
+        updated.put(slotCode, slot.toBuilder().quantity(Math.max(0, slot.getQuantity() + delta)).build());
+        return new MachineState(machineId, Collections.unmodifiableMap(updated));
+    }
+
+    /**
+     * @return the slots of the machine {@link MachineSlotDTO} in slot code order
+     */
+    public List<MachineSlotDTO> toDTOs() {
+        return new ArrayList<>(slots.values());
+    }
+}
@@ -0,0 +1,144 @@
+package com.flapkap.challenge.services.machine;
+
+import com.flapkap.challenge.events.ProductChangedEvent;
+import com.flapkap.challenge.events.SlotStockChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the {@link MachineState} of the machines in use, the least recently used machine is evicted
+ * once machines.cache.maxEntries machines are held. A node serving a set of machines only holds their slots,
+ * so the machines can be spread over the nodes by id. The states only serve the slot listings, purchases
+ * read their slot in the purchase transaction, so a listing may lag behind a change made on another node.
+ *
+ * Only loaded machines are held. A state loaded across a change of its machine is not cached,
+ * the changes of the other machines don't get in the way. Slot purchases patch the cached quantity,
+ * a restock or a new slot assignment drops the machine. Renamed, repriced and deleted products drop
+ * the machines holding them, those changes are rare and also discard every load running at the time.
+ */
+@Component
+@Slf4j
+public class MachineStateCache {
+    // in access order, the least recently used machine first
+    private final LinkedHashMap<Long, MachineState> states = new LinkedHashMap<>(16, 0.75f, true);
+    // the loads running, each one is marked when its machine changes meanwhile
+    private final List<Load> loads = new ArrayList<>();
+
+    @Value("${machines.cache.maxEntries:1024}")
+    private int maxEntries;
+
+    /**
+     * Return the state of a machine, loading it on a miss
+     *
+     * @param machineId the machine id
+     * @param loader loads the state from the database
+     * @return the state of the machine {@link MachineState}
+     */
+    public MachineState get(Long machineId, Supplier<MachineState> loader) {
+        Load load = new Load(machineId);
+        synchronized (this) {
+            MachineState cached = states.get(machineId);
+            if (cached != null) {
+                return cached;
+            }
+            loads.add(load);
+        }
+
+        MachineState state;
+        try {
+            state = loader.get();
+        } finally {
+            synchronized (this) {
+                loads.remove(load);
+            }
+        }
+
+        synchronized (this) {
+            // the state is only kept if neither the machine nor the catalog changed while it was loading
+            if (!load.changed && !states.containsKey(machineId)) {
+                states.put(machineId, state);
+                Iterator<Map.Entry<Long, MachineState>> eldest = states.entrySet().iterator();
+                while (states.size() > maxEntries && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Drop the state of a machine after its slots changed
+     *
+     * @param machineId the machine id
+     */
+    public synchronized void evict(Long machineId) {
+        states.remove(machineId);
+        changed(machineId);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // the listings don't show the product stock, only the changes of the product itself matter
+        if (event.getType() == ProductChangedEvent.ChangeType.PURCHASED || event.getType() == ProductChangedEvent.ChangeType.CREATED) {
+            return;
+        }
+
+        Long productId = event.getProductId();
+        synchronized (this) {
+            for (Load load : loads) {
+                load.changed = true;
+            }
+            states.values().removeIf(state -> state.holds(productId));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onSlotStockChanged(SlotStockChangedEvent event) {
+        if (event.getSlotCode() == null) {
+            evict(event.getMachineId());
+            return;
+        }
+
+        changed(event.getMachineId());
+        MachineState current = states.get(event.getMachineId());
+        if (current != null) {
+            states.put(event.getMachineId(), current.withSlotQuantity(event.getSlotCode(), event.getDelta()));
+        }
+    }
+
+    /**
+     * @return the number of machines currently held in memory
+     */
+    public synchronized int size() {
+        return states.size();
+    }
+
+    private void changed(Long machineId) {
+        for (Load load : loads) {
+            if (load.machineId.equals(machineId)) {
+                load.changed = true;
+            }
+        }
+    }
+
+    private static final class Load {
+        private final Long machineId;
+        // guarded by the cache
+        private boolean changed;
+
+        private Load(Long machineId) {
+            this.machineId = machineId;
+        }
+    }
+}
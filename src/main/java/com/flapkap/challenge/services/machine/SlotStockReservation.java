@@ -0,0 +1,48 @@
+package com.flapkap.challenge.services.machine;
+
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.events.SlotStockChangedEvent;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.MachineSlotRepository;
+import com.flapkap.challenge.services.inventory.StockReservationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Takes the stock of a purchase from one machine slot, the product stock is left as is.
+ */
+@RequiredArgsConstructor
+class SlotStockReservation implements StockReservationService {
+    private final MachineSlotRepository machineSlotRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Long machineId;
+    private final Long slotId;
+    private final String slotCode;
+
+    @Override
+    public void reserve(Product product, int quantity) throws BadRequestException {
+        // a single conditional update, the slot can't go below zero nor sell another product
+        // whatever runs concurrently, on this node or any other
+        if (machineSlotRepository.takeStock(slotId, product.getId(), quantity) == 0) {
+            throw Rejections.NOT_ENOUGH_PRODUCTS;
+        }
+
+        eventPublisher.publishEvent(SlotStockChangedEvent.builder()
+                .machineId(machineId)
+                .slotCode(slotCode)
+                .delta(-quantity)
+                .build());
+    }
+
+    @Override
+    public int available(Product product) {
+        // a slot that got another product has nothing left of this one
+        return machineSlotRepository.findQuantity(slotId, product.getId()).orElse(0);
+    }
+
+    @Override
+    public boolean takesProductStock() {
+        return false;
+    }
+}
@@ -5,6 +5,8 @@ import com.flapkap.challenge.dto.product.ProductDTO;
 import com.flapkap.challenge.entities.Product;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.services.coins.CoinProfile;
+import com.flapkap.challenge.services.inventory.StockReservationService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -26,6 +28,15 @@ public interface ProductService {
      * */
     ProductDTO getProductById(Long id) throws EntityNotFoundException;
 
+    /**
+     * Return the entity tag of a product without loading it
+     *
+     * @param id product id
+     * @return the strong entity tag derived from the product version
+     * @throws EntityNotFoundException if the product does not exist
+     * */
+    String getProductEtag(Long id) throws EntityNotFoundException;
+
     /**
      * Return all products of a seller that authenticated with pagination
      *
@@ -75,4 +86,18 @@ public interface ProductService {
      * */
     TransactionDTO buyProduct(Long id, Integer productAmount) throws EntityNotFoundException, BadRequestException;
 
+    /**
+     * Buy a product on a machine, the change is paid back in the coins of the machine
+     *
+     * @param id the product id
+     * @param productAmount the amount of the product
+     * @param coins the coin profile of the machine
+     * @param stock the stock the product is taken from, e.g. the machine slot
+     * @return the transaction {@link TransactionDTO}
+     * @throws EntityNotFoundException if the product does not exist
+     * @throws BadRequestException if the amount is greater than the available amount
+     * @throws BadRequestException if the user not have enough money to buy the product
+     * */
+    TransactionDTO buyProduct(Long id, Integer productAmount, CoinProfile coins, StockReservationService stock) throws EntityNotFoundException, BadRequestException;
+
 }
@@ -4,18 +4,34 @@ import com.flapkap.challenge.dto.TransactionDTO;
 import com.flapkap.challenge.dto.product.ProductDTO;
 import com.flapkap.challenge.entities.Product;
 import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.events.ProductChangedEvent;
+import com.flapkap.challenge.events.ProductPurchasedEvent;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.MachineSlotRepository;
 import com.flapkap.challenge.repositories.ProductRepository;
+import com.flapkap.challenge.services.catalog.CatalogVersion;
+import com.flapkap.challenge.services.coins.CoinProfile;
+import com.flapkap.challenge.services.coins.Denominations;
+import com.flapkap.challenge.services.health.PurchaseLatency;
+import com.flapkap.challenge.services.inventory.InventoryPartitions;
+import com.flapkap.challenge.services.inventory.StockReservationService;
+import com.flapkap.challenge.services.journal.JournalEvent;
+import com.flapkap.challenge.services.journal.JournalEventType;
+import com.flapkap.challenge.services.journal.JournalService;
+import com.flapkap.challenge.services.retry.OptimisticRetryExecutor;
+import com.flapkap.challenge.services.sales.SalesOverflow;
 import com.flapkap.challenge.services.user.UserService;
-import com.flapkap.challenge.utils.AllowedPrices;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Service
@@ -23,84 +39,113 @@ import java.util.Objects;
 @Slf4j
 public class ProductServiceImpl implements ProductService {
     private final ProductRepository productRepository;
+    private final MachineSlotRepository machineSlotRepository;
     private final UserService userService;
+    private final InventoryPartitions inventoryPartitions;
+    private final StockReservationService stockReservationService;
+    private final OptimisticRetryExecutor retryExecutor;
+    private final JournalService journalService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PurchaseLatency purchaseLatency;
+    private final Denominations denominations;
+    private final SalesOverflow salesOverflow;
+    private final CatalogVersion catalogVersion;
 
     @Override
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getAllProducts(Pageable pageable) {
         return productRepository.findAll(pageable).map(Product::toDTO);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public ProductDTO getProductById(Long id) throws EntityNotFoundException {
-        return productRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Product not found")).toDTO();
+        return productRepository.findById(id).orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND).toDTO();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public String getProductEtag(Long id) throws EntityNotFoundException {
+        long version = productRepository.findVersionById(id).orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
+        return CatalogVersion.productEtag(id, version);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public Page<ProductDTO> getMyProducts(Pageable pageable) {
         User user = userService.getCurrentUser();
         return productRepository.findBySellerId(user.getId(), pageable).map(Product::toDTO);
     }
 
     @Override
+    @Transactional
     public ProductDTO createProduct(Product product) throws EntityNotFoundException, BadRequestException {
         User user = userService.getCurrentUser();
         product.setSeller(user);
 
         // check if the product already exists
         if (productRepository.findByProductName(product.getProductName()).isPresent()) {
-            throw new BadRequestException("Product already exists");
+            throw Rejections.PRODUCT_EXISTS;
         }
 
         // check if the cost is negative
         if (product.getCost() < 0) {
-            throw new BadRequestException("Cost cannot be negative");
+            throw Rejections.COST_NEGATIVE;
         }
 
         // check the product cost is allowed
-        if (!AllowedPrices.isAllowedPrice(product.getCost())) {
-            throw new BadRequestException("Invalid cost. Allowed prices are 5, 10, 20, 50 or 100 cent coins");
-        }
+        denominations.defaults().checkCost(product.getCost());
 
         // check if the amount is negative or zero
         if (product.getAmountAvailable() <= 0) {
-            throw new BadRequestException("Amount must be greater than zero");
+            throw Rejections.AMOUNT_NOT_POSITIVE;
         }
 
-        return productRepository.save(product).toDTO();
+        Product savedProduct = productRepository.save(product);
+        catalogVersion.increment();
+        journalStock(savedProduct);
+        publishChange(savedProduct, ProductChangedEvent.ChangeType.CREATED);
+
+        return savedProduct.toDTO();
     }
 
     @Override
     public ProductDTO updateProduct(Long id, Product product) throws EntityNotFoundException, BadRequestException {
+        return retryExecutor.execute("updateProduct", () -> doUpdateProduct(id, product));
+    }
+
+    private ProductDTO doUpdateProduct(Long id, Product product) throws EntityNotFoundException, BadRequestException {
         // get the product by id
         Product productToUpdate = productRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException("Product not found"));
+                .orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
 
         // get the current user
         User user = userService.getCurrentUser();
 
         // check if the current user is the seller of the product
         if (!Objects.equals(productToUpdate.getSeller().getId(), user.getId())) {
-            throw new EntityNotFoundException("Product not found");
+            throw Rejections.PRODUCT_NOT_FOUND;
         }
 
         // check if the product name already exists except for the current product
         if (productRepository.findByProductNameAndIdNot(product.getProductName(), id).isPresent()) {
-            throw new BadRequestException("Product already exists");
+            throw Rejections.PRODUCT_EXISTS;
         }
 
         // check if the cost is negative
         if (product.getCost() < 0) {
-            throw new BadRequestException("Cost cannot be negative");
+            throw Rejections.COST_NEGATIVE;
         }
 
-        // check the product cost is allowed
-        if (!AllowedPrices.isAllowedPrice(product.getCost())) {
-            throw new BadRequestException("Invalid cost. Allowed prices are 5, 10, 20, 50 or 100 cent coins");
+        // check the product cost is allowed, also in the coins of the machines selling it
+        denominations.defaults().checkCost(product.getCost());
+        for (Long machineId : machineSlotRepository.findMachineIdsByProductId(id)) {
+            denominations.forMachine(machineId).checkCost(product.getCost());
         }
 
         // check if the amount is negative or zero
         if (product.getAmountAvailable() <= 0) {
-            throw new BadRequestException("Amount must be greater than zero");
+            throw Rejections.AMOUNT_NOT_POSITIVE;
         }
 
         // update the product
@@ -109,73 +154,150 @@ public class ProductServiceImpl implements ProductService {
         productToUpdate.setAmountAvailable(product.getAmountAvailable());
 
         // save the product
-        return productRepository.save(productToUpdate).toDTO();
+        Product savedProduct = productRepository.save(productToUpdate);
+        catalogVersion.increment();
+        journalStock(savedProduct);
+        publishChange(savedProduct, ProductChangedEvent.ChangeType.UPDATED);
+
+        return savedProduct.toDTO();
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) throws EntityNotFoundException, BadRequestException {
         // get the product by id
-        Product product = productRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        Product product = productRepository.findById(id).orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
 
         // get the current user
         User user = userService.getCurrentUser();
 
         // check if the current user is the seller of the product
         if (!Objects.equals(product.getSeller().getId(), user.getId())) {
-            throw new EntityNotFoundException("Product not found");
+            throw Rejections.PRODUCT_NOT_FOUND;
         }
 
-        // delete the product
+        // empty the machine slots holding the product, then delete the product
+        machineSlotRepository.emptyByProductId(id);
         productRepository.deleteById(id);
+        catalogVersion.increment();
+        inventoryPartitions.evict(id);
+        journalService.record(JournalEvent.builder()
+                .type(JournalEventType.PRODUCT_DELETE)
+                .productId(id)
+                .build());
+        publishChange(product, ProductChangedEvent.ChangeType.DELETED);
     }
 
     @Override
     public TransactionDTO buyProduct(Long id, Integer productAmount) throws EntityNotFoundException, BadRequestException {
+        return buyProduct(id, productAmount, denominations.defaults(), stockReservationService);
+    }
+
+    @Override
+    public TransactionDTO buyProduct(Long id, Integer productAmount, CoinProfile coins, StockReservationService stock) throws EntityNotFoundException, BadRequestException {
+        // purchases of the same product are serialized inside the seller partition
+        // and retried on version conflicts with purchases running on other nodes
+        long start = System.nanoTime();
+        try {
+            // every attempt holds the lock, the backoff between the attempts doesn't
+            // the purchase is journaled in commit order, but waits for the journal after releasing the lock
+            // and so does the sale that overflowed the sales queue
+            return salesOverflow.deferring(() -> journalService.awaitingDurability(() -> retryExecutor.execute("buyProduct",
+                    attempt -> inventoryPartitions.withProductLock(id, attempt),
+                    () -> doBuyProduct(id, productAmount, coins, stock))));
+        } finally {
+            purchaseLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private TransactionDTO doBuyProduct(Long id, Integer productAmount, CoinProfile coins, StockReservationService stock) throws EntityNotFoundException, BadRequestException {
         // get the product by id
-        Product product = productRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("Product not found"));
+        Product product = productRepository.findById(id).orElseThrow(() -> Rejections.PRODUCT_NOT_FOUND);
 
         // check if the amount is negative
         if (productAmount < 0) {
-            throw new BadRequestException("Amount cannot be negative");
+            throw Rejections.AMOUNT_NEGATIVE;
         }
 
         // check if the amount is zero
         if (productAmount == 0) {
-            throw new BadRequestException("Amount cannot be zero");
-        }
-
-        // check if the amount is greater than the amount available
-        if (productAmount > product.getAmountAvailable()) {
-            throw new BadRequestException("There are not enough products available");
+            throw Rejections.AMOUNT_ZERO;
         }
 
         // get the current user
         User user = userService.getCurrentUser();
 
-        // check if the current user has enough money
+        // check if the balance is in the currency of the machine
+        coins.checkBalance(user.getDepositUnit());
+
+        // check if the current user has enough money, a sold out product is reported first
         if (user.getDeposit() < product.getCost() * productAmount) {
-            throw new BadRequestException("Not sufficient funds. Please deposit more money");
+            if (productAmount > stock.available(product)) {
+                throw Rejections.NOT_ENOUGH_PRODUCTS;
+            }
+            throw Rejections.INSUFFICIENT_FUNDS;
         }
 
-        // update the product
-        product.setAmountAvailable(product.getAmountAvailable() - productAmount);
-
-        // update the user balance
-        user.setDeposit(user.getDeposit() - product.getCost() * productAmount);
-
-        // save the product
-        productRepository.save(product);
+        // take the stock, from the product row, the stock leased by this node or a machine slot
+        stock.reserve(product, productAmount);
+        ProductDTO productDTO = product.toDTO();
+        if (stock.takesProductStock()) {
+            // the leased stock is not on the product entity, the stock left is read from the reservation
+            productDTO.setAmountAvailable(stock.available(product));
+            publishChange(product, productDTO.getAmountAvailable(), ProductChangedEvent.ChangeType.PURCHASED);
+        }
 
-        // save the user
-        userService.updateUser(user.getId(), user);
+        // charge the user balance
+        userService.chargeDeposit(user, product.getCost() * productAmount);
+
+        // journal the purchase once it is committed
+        journalService.record(JournalEvent.builder()
+                .type(stock.takesProductStock() ? JournalEventType.PURCHASE : JournalEventType.SLOT_PURCHASE)
+                .userId(user.getId())
+                .productId(product.getId())
+                .quantity(productAmount)
+                .amount(product.getCost() * productAmount)
+                .build());
+
+        // the sales history and rollups are written asynchronously after the commit
+        eventPublisher.publishEvent(ProductPurchasedEvent.builder()
+                .productId(product.getId())
+                .sellerId(product.getSeller().getId())
+                .buyerId(user.getId())
+                .quantity(productAmount)
+                .total(product.getCost() * productAmount)
+                .purchasedAt(LocalDateTime.now())
+                .build());
 
         // return the transaction
         return TransactionDTO.builder()
                 .total(product.getCost() * productAmount)
                 .change(user.getDeposit())
-                .product(product.toDTO())
+                .coins(coins.change(user.getDeposit()))
+                .product(productDTO)
                 .amount(productAmount)
                 .build();
     }
 
+    private void publishChange(Product product, ProductChangedEvent.ChangeType type) {
+        publishChange(product, product.getAmountAvailable(), type);
+    }
+
+    private void publishChange(Product product, int amountAvailable, ProductChangedEvent.ChangeType type) {
+        eventPublisher.publishEvent(ProductChangedEvent.builder()
+                .productId(product.getId())
+                .sellerId(product.getSeller().getId())
+                .amountAvailable(amountAvailable)
+                .type(type)
+                .build());
+    }
+
+    private void journalStock(Product product) {
+        journalService.record(JournalEvent.builder()
+                .type(JournalEventType.STOCK_SET)
+                .productId(product.getId())
+                .quantity(product.getAmountAvailable())
+                .build());
+    }
+
 }
@@ -0,0 +1,112 @@
+package com.flapkap.challenge.services.retry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a mutation of a versioned entity in its own transaction and retries it when another request
+ * updated the same row first. The backoff between attempts grows exponentially with full jitter,
+ * so competing requests don't retry in lockstep. The retries and the operations that gave up are
+ * counted per operation in the vending.retry.retries and vending.retry.exhausted meters.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OptimisticRetryExecutor {
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${retry.optimistic.maxAttempts:4}")
+    private int maxAttempts;
+    @Value("${retry.optimistic.baseDelayMs:5}")
+    private long baseDelayMs;
+    @Value("${retry.optimistic.maxDelayMs:100}")
+    private long maxDelayMs;
+
+    /**
+     * Execute the action in a transaction, retrying on optimistic locking conflicts.
+     * When a transaction is already active the action joins it and the caller owns the retry.
+     *
+     * @param operation the operation name used for the retry metrics
+     * @param action the action to execute
+     * @return the result of the action
+     * @throws OptimisticLockingFailureException if the action still conflicts after the last attempt
+     */
+    public <T> T execute(String operation, Supplier<T> action) {
+        return execute(operation, Supplier::get, action);
+    }
+
+    /**
+     * Execute the action in a transaction, retrying on optimistic locking conflicts.
+     * Every attempt runs inside the guard, e.g. a lock held around the transaction, the backoff
+     * between the attempts runs outside of it so the other requests can go on meanwhile.
+     *
+     * @param operation the operation name used for the retry metrics
+     * @param guard runs one attempt, the transaction included
+     * @param action the action to execute
+     * @return the result of the action
+     * @throws OptimisticLockingFailureException if the action still conflicts after the last attempt
+     */
+    public <T> T execute(String operation, Function<Supplier<T>, T> guard, Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return guard.apply(action);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return guard.apply(() -> transactionTemplate.execute(status -> action.get()));
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    counter("vending.retry.exhausted", operation).increment();
+                    log.warn("Operation {} gave up after {} attempts: {}", operation, attempt, e.getMessage());
+                    throw e;
+                }
+                counter("vending.retry.retries", operation).increment();
+                log.debug("Operation {} conflicted on attempt {}, retrying", operation, attempt);
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Execute an action without a result, see {@link #execute(String, Supplier)}
+     *
+     * @param operation the operation name used for the retry metrics
+     * @param action the action to execute
+     */
+    public void run(String operation, Runnable action) {
+        execute(operation, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    private Counter counter(String name, String operation) {
+        // the registry returns the meter registered before for the same name and operation
+        return Counter.builder(name)
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,61 @@
+package com.flapkap.challenge.services.sales;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.Supplier;
+
+/**
+ * Records the sales the full sales queue rejected on the purchasing thread, which slows the purchases down
+ * instead of losing the sale. A sale is published after its purchase commits, while the product lock is still held,
+ * so inside {@link #deferring(Supplier)} it is only recorded once the purchase released the lock.
+ */
+@Component
+@Slf4j
+public class SalesOverflow implements RejectedExecutionHandler {
+    // the sales rejected on the current thread inside deferring, null outside of it
+    private final ThreadLocal<List<Runnable>> deferred = new ThreadLocal<>();
+
+    /**
+     * Run the action, the sales rejected meanwhile are recorded after it returned
+     *
+     * @param action the purchase, holding its locks
+     * @return the result of the action
+     */
+    public <T> T deferring(Supplier<T> action) {
+        if (deferred.get() != null) {
+            return action.get();
+        }
+
+        List<Runnable> sales = new ArrayList<>(1);
+        deferred.set(sales);
+        try {
+            return action.get();
+        } finally {
+            deferred.remove();
+            // the sales belong to committed purchases, they are recorded even when a later attempt failed
+            sales.forEach(Runnable::run);
+        }
+    }
+
+    @Override
+    public void rejectedExecution(Runnable sale, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            log.error("Sales executor is shut down, dropping a sale event");
+            return;
+        }
+
+        List<Runnable> sales = deferred.get();
+        if (sales != null) {
+            log.warn("Sales queue is full, recording the sale once the purchase released its lock");
+            sales.add(sale);
+            return;
+        }
+        log.warn("Sales queue is full, recording the sale on the calling thread");
+        sale.run();
+    }
+}
@@ -0,0 +1,27 @@
+package com.flapkap.challenge.services.sales;
+
+import com.flapkap.challenge.dto.sales.SalesRollupDTO;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import com.flapkap.challenge.events.ProductPurchasedEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface SalesService {
+
+    /**
+     * Store a committed purchase in the sales history and add it to the minute, hour and day rollups
+     *
+     * @param event the purchase {@link ProductPurchasedEvent}
+     * */
+    void recordSale(ProductPurchasedEvent event);
+
+    /**
+     * Return the sales rollups of the authenticated seller, the most recent bucket first
+     *
+     * @param granularity the bucket size
+     * @param page pagination information
+     * @return the rollups {@link SalesRollupDTO} with pagination
+     * */
+    Page<SalesRollupDTO> getMySales(RollupGranularity granularity, Pageable page);
+
+}
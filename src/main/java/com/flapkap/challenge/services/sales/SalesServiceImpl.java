@@ -0,0 +1,95 @@
+package com.flapkap.challenge.services.sales;
+
+import com.flapkap.challenge.dto.sales.SalesRollupDTO;
+import com.flapkap.challenge.entities.Sale;
+import com.flapkap.challenge.entities.SalesRollup;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import com.flapkap.challenge.events.ProductPurchasedEvent;
+import com.flapkap.challenge.repositories.SaleRepository;
+import com.flapkap.challenge.repositories.SalesRollupRepository;
+import com.flapkap.challenge.services.user.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SalesServiceImpl implements SalesService {
+    private final SaleRepository saleRepository;
+    private final SalesRollupRepository salesRollupRepository;
+    private final UserService userService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    @Async("salesExecutor")
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void recordSale(ProductPurchasedEvent event) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transaction.executeWithoutResult(status -> store(event));
+        } catch (DataIntegrityViolationException e) {
+            // the first sale of a bucket on two nodes at once collides on the insert, the bucket exists on the second try
+            log.debug("Sale of product {} raced for a new bucket, recording it again", event.getProductId());
+            transaction.executeWithoutResult(status -> store(event));
+        }
+
+        log.debug("Sale of product {} has been recorded", event.getProductId());
+    }
+
+    private void store(ProductPurchasedEvent event) {
+        // store the sale in the history
+        saleRepository.save(Sale.builder()
+                .productId(event.getProductId())
+                .sellerId(event.getSellerId())
+                .buyerId(event.getBuyerId())
+                .quantity(event.getQuantity())
+                .total(event.getTotal())
+                .soldAt(event.getPurchasedAt())
+                .build());
+
+        // add the sale to the bucket of every granularity, the first sale of a bucket inserts it
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            LocalDateTime bucketStart = granularity.bucketOf(event.getPurchasedAt());
+            int updated = salesRollupRepository.addSale(event.getSellerId(), event.getProductId(), granularity,
+                    bucketStart, event.getQuantity(), event.getTotal());
+            if (updated == 0) {
+                salesRollupRepository.saveAndFlush(SalesRollup.builder()
+                        .sellerId(event.getSellerId())
+                        .productId(event.getProductId())
+                        .granularity(granularity)
+                        .bucketStart(bucketStart)
+                        .quantity(event.getQuantity())
+                        .revenue(event.getTotal())
+                        .build());
+            }
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<SalesRollupDTO> getMySales(RollupGranularity granularity, Pageable page) {
+        User user = userService.getCurrentUser();
+
+        // the ordering is fixed to the rollup index, only the page and the size come from the request
+        return salesRollupRepository.findBySellerIdAndGranularityOrderByBucketStartDesc(
+                        user.getId(), granularity, PageRequest.of(page.getPageNumber(), page.getPageSize()))
+                .map(SalesRollup::toDTO);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.flapkap.challenge.services.stock;
+
+import com.flapkap.challenge.dto.product.StockDeltaDTO;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface StockStreamService {
+
+    /**
+     * Subscribe to the stock changes of the catalog.
+     * The changes are coalesced, a subscriber receives at most one "stock" event per interval
+     * with the latest {@link StockDeltaDTO} of every product that changed since the previous one.
+     *
+     * @param sellerId only stream the products of this seller, or every product when null
+     * @return the server-sent events emitter of the subscriber
+     * */
+    SseEmitter subscribe(Long sellerId);
+
+    /**
+     * Send the changes collected since the previous flush to every subscriber
+     * */
+    void flush();
+
+    /**
+     * @return the number of connected subscribers
+     * */
+    int getSubscriberCount();
+
+}
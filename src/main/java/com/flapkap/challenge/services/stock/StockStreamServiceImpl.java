@@ -0,0 +1,185 @@
+package com.flapkap.challenge.services.stock;
+
+import com.flapkap.challenge.dto.product.StockDeltaDTO;
+import com.flapkap.challenge.events.ProductChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Collects the stock changes and sends them to the subscribers once per interval.
+ * The sends run on a pool of their own, a slow client only holds a sender thread, not the flush.
+ * A subscriber has at most one send in flight, the changes arriving meanwhile are coalesced into
+ * its backlog, and a send running longer than stock.stream.sendTimeoutMs drops the subscriber.
+ */
+@Service
+@Slf4j
+public class StockStreamServiceImpl implements StockStreamService {
+    // the latest delta of every product changed since the previous flush, a burst of purchases keeps one entry
+    private final Map<Long, StockDeltaDTO> pending = new ConcurrentHashMap<>();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    @Value("${stock.stream.lowStockThreshold:3}")
+    private int lowStockThreshold;
+    @Value("${stock.stream.timeoutMs:1800000}")
+    private long timeoutMs;
+    @Value("${stock.stream.senderThreads:4}")
+    private int senderThreads;
+    @Value("${stock.stream.sendTimeoutMs:5000}")
+    private long sendTimeoutMs;
+
+    private ExecutorService sender;
+
+    @PostConstruct
+    public void start() {
+        // a subscriber never has more than one send queued, the queue is bounded by the subscribers
+        sender = Executors.newFixedThreadPool(senderThreads, new CustomizableThreadFactory("stock-stream-"));
+    }
+
+    @PreDestroy
+    public void stop() {
+        sender.shutdownNow();
+    }
+
+    @Override
+    public SseEmitter subscribe(Long sellerId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, sellerId);
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        log.debug("Stock stream subscriber added, {} subscribers", subscribers.size());
+        return emitter;
+    }
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        boolean deleted = event.getType() == ProductChangedEvent.ChangeType.DELETED;
+        pending.put(event.getProductId(), StockDeltaDTO.builder()
+                .productId(event.getProductId())
+                .sellerId(event.getSellerId())
+                .amountAvailable(event.getAmountAvailable())
+                .lowStock(!deleted && event.getAmountAvailable() > 0 && event.getAmountAvailable() <= lowStockThreshold)
+                .soldOut(!deleted && event.getAmountAvailable() == 0)
+                .deleted(deleted)
+                .build());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${stock.stream.intervalMs:1000}")
+    public void flush() {
+        // take the collected deltas, a delta replaced in the meantime stays pending for the next flush
+        List<StockDeltaDTO> deltas = new ArrayList<>();
+        for (Map.Entry<Long, StockDeltaDTO> entry : pending.entrySet()) {
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                deltas.add(entry.getValue());
+            }
+        }
+        // every subscriber is visited, also without new deltas, so a stuck send is found in time
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            for (StockDeltaDTO delta : deltas) {
+                if (subscriber.sellerId == null || Objects.equals(delta.getSellerId(), subscriber.sellerId)) {
+                    subscriber.backlog.put(delta.getProductId(), delta);
+                }
+            }
+
+            if (subscriber.sending.get() && now - subscriber.sendStartedAt > TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs)) {
+                log.debug("Stock stream subscriber did not take an event within {} ms, dropping it", sendTimeoutMs);
+                drop(subscriber, new TimeoutException("Stock event send timed out"));
+                continue;
+            }
+            dispatch(subscriber);
+        }
+    }
+
+    private void dispatch(Subscriber subscriber) {
+        if (subscriber.backlog.isEmpty() || !subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        subscriber.sendStartedAt = System.nanoTime();
+        try {
+            subscriber.sendTask = sender.submit(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            subscriber.sending.set(false);
+        }
+    }
+
+    private void send(Subscriber subscriber) {
+        try {
+            List<StockDeltaDTO> batch = new ArrayList<>();
+            for (Map.Entry<Long, StockDeltaDTO> entry : subscriber.backlog.entrySet()) {
+                if (subscriber.backlog.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getValue());
+                }
+            }
+            if (!batch.isEmpty()) {
+                subscriber.emitter.send(SseEmitter.event().name("stock").data(batch));
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Stock stream subscriber disconnected: {}", e.getMessage());
+            subscribers.remove(subscriber);
+            return;
+        } finally {
+            subscriber.sending.set(false);
+        }
+        // the deltas added while this send was running go out right away instead of waiting for the next flush
+        if (subscribers.contains(subscriber)) {
+            dispatch(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception reason) {
+        subscribers.remove(subscriber);
+        Future<?> sendTask = subscriber.sendTask;
+        if (sendTask != null) {
+            sendTask.cancel(true);
+        }
+        subscriber.emitter.completeWithError(reason);
+    }
+
+    @Override
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final Long sellerId;
+        // the latest undelivered delta per product
+        private final Map<Long, StockDeltaDTO> backlog = new ConcurrentHashMap<>();
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long sendStartedAt;
+        private volatile Future<?> sendTask;
+
+        private Subscriber(SseEmitter emitter, Long sellerId) {
+            this.emitter = emitter;
+            this.sellerId = sellerId;
+        }
+    }
+}
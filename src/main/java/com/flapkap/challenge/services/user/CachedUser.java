@@ -0,0 +1,59 @@
+package com.flapkap.challenge.services.user;
+
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The immutable part of a {@link User} needed to authenticate it.
+ * The deposit isn't cached, the services always read the current user from the database.
+ */
+@Data
+@Builder
+public class CachedUser {
+    private static final char SEPARATOR = '|';
+
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final UserRole role;
+
+    public static CachedUser of(User user) {
+        return CachedUser.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .password(user.getPassword())
+                .role(user.getRole())
+                .build();
+    }
+
+    /**
+     * @return a new detached user, so callers can't change the cached entry
+     */
+    public User toUser() {
+        User user = new User();
+        user.setId(id);
+        user.setUsername(username);
+        user.setPassword(password);
+        user.setRole(role);
+        return user;
+    }
+
+    /**
+     * @return the shared cache representation, the username comes last since it is the only free text
+     */
+    public String serialize() {
+        return id + String.valueOf(SEPARATOR) + role.name() + SEPARATOR + password + SEPARATOR + username;
+    }
+
+    public static CachedUser deserialize(String value) {
+        String[] parts = value.split("\\|", 4);
+        return CachedUser.builder()
+                .id(Long.valueOf(parts[0]))
+                .role(UserRole.valueOf(parts[1]))
+                .password(parts[2])
+                .username(parts[3])
+                .build();
+    }
+}
@@ -0,0 +1,165 @@
+package com.flapkap.challenge.services.user;
+
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link SharedUserCache} on any Redis protocol compatible server, enabled by usercache.shared.uri.
+ * Entries expire with the shared TTL and invalidations are broadcast on a pub/sub channel.
+ * The server is connected in the background, until then the tier behaves as a miss.
+ */
+@Component
+@ConditionalOnProperty("usercache.shared.uri")
+@Slf4j
+public class RedisSharedUserCache implements SharedUserCache {
+    private static final String KEY_PREFIX = "vending:user:";
+    private static final String INVALIDATION_CHANNEL = "vending:user:invalidate";
+
+    private final RedisClient client;
+    private final RedisURI redisURI;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("user-cache-"));
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final long ttlSeconds;
+    private volatile StatefulRedisConnection<String, String> connection;
+    private volatile StatefulRedisPubSubConnection<String, String> pubSubConnection;
+
+    @Value("${usercache.shared.reconnectMs:5000}")
+    private long reconnectMs;
+
+    @Value("${usercache.shared.reinvalidateDelayMs:1000}")
+    private long reinvalidateDelayMs;
+
+    public RedisSharedUserCache(@Value("${usercache.shared.uri}") String uri,
+                                @Value("${usercache.shared.ttlSeconds:300}") long ttlSeconds,
+                                @Value("${usercache.shared.timeoutMs:50}") long timeoutMs) {
+        this.redisURI = RedisURI.create(uri);
+        // a slow shared tier must not be slower than the database it stands in front of
+        redisURI.setTimeout(Duration.ofMillis(timeoutMs));
+
+        this.client = RedisClient.create(redisURI);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    @PostConstruct
+    public void start() {
+        // an unreachable tier must not stop the node from starting
+        scheduler.execute(this::connect);
+    }
+
+    private void connect() {
+        StatefulRedisConnection<String, String> connected = null;
+        try {
+            connected = client.connect();
+            StatefulRedisPubSubConnection<String, String> pubSub = client.connectPubSub();
+            pubSub.addListener(new RedisPubSubAdapter<>() {
+                @Override
+                public void message(String channel, String message) {
+                    listeners.forEach(listener -> listener.accept(message));
+                }
+            });
+            pubSub.sync().subscribe(INVALIDATION_CHANNEL);
+
+            // the client reconnects and subscribes again by itself from now on
+            pubSubConnection = pubSub;
+            connection = connected;
+            log.info("Shared user cache connected to {}", redisURI.getHost());
+        } catch (RuntimeException e) {
+            if (connected != null) {
+                connected.close();
+            }
+            log.warn("Shared user cache connection to {} failed, retrying in {} ms: {}", redisURI.getHost(), reconnectMs, e.getMessage());
+            scheduler.schedule(this::connect, reconnectMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Optional<CachedUser> get(String username) {
+        StatefulRedisConnection<String, String> current = connection;
+        if (current == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.ofNullable(current.sync().get(KEY_PREFIX + username)).map(CachedUser::deserialize);
+        } catch (RuntimeException e) {
+            log.warn("Shared user cache read failed: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(CachedUser user) {
+        StatefulRedisConnection<String, String> current = connection;
+        if (current == null) {
+            return;
+        }
+
+        try {
+            current.async().setex(KEY_PREFIX + user.getUsername(), ttlSeconds, user.serialize());
+        } catch (RuntimeException e) {
+            log.warn("Shared user cache write failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void invalidate(String username) {
+        delete(username);
+
+        // a put of the old row read before the change may land after the delete, delete it once more later
+        try {
+            scheduler.schedule(() -> delete(username), reinvalidateDelayMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            log.warn("Shared user cache invalidation of {} not rescheduled: {}", username, e.getMessage());
+        }
+    }
+
+    private void delete(String username) {
+        StatefulRedisConnection<String, String> current = connection;
+        if (current == null) {
+            return;
+        }
+
+        try {
+            current.sync().del(KEY_PREFIX + username);
+            current.sync().publish(INVALIDATION_CHANNEL, username);
+        } catch (RuntimeException e) {
+            log.warn("Shared user cache invalidation of {} failed: {}", username, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onInvalidation(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        if (pubSubConnection != null) {
+            pubSubConnection.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+        client.shutdown();
+    }
+}
@@ -0,0 +1,40 @@
+package com.flapkap.challenge.services.user;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * The cache tier shared by all the nodes behind the load balancer.
+ * Implementations must never fail the caller, an unavailable tier behaves as a miss.
+ */
+public interface SharedUserCache {
+
+    /**
+     * Get the cached user
+     *
+     * @param username the username
+     * @return the cached user, empty on a miss
+     * */
+    Optional<CachedUser> get(String username);
+
+    /**
+     * Cache the user
+     *
+     * @param user the user to cache
+     * */
+    void put(CachedUser user);
+
+    /**
+     * Remove the user from the shared tier and tell the other nodes to evict it
+     *
+     * @param username the username
+     * */
+    void invalidate(String username);
+
+    /**
+     * Listen to the invalidations published by the other nodes
+     *
+     * @param listener called with the username to evict
+     * */
+    void onInvalidation(Consumer<String> listener);
+}
@@ -0,0 +1,124 @@
+package com.flapkap.challenge.services.user;
+
+import com.flapkap.challenge.events.UserChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Two level cache of the users by username: a bounded near-cache with a short TTL on every node,
+ * in front of the optional {@link SharedUserCache}. Every {@link UserChangedEvent} evicts the username
+ * locally, from the shared tier and, through the shared tier, on the other nodes.
+ */
+@Component
+@Slf4j
+public class UserDetailsCache {
+    private final Map<String, Entry> nearCache = new ConcurrentHashMap<>();
+    private final SharedUserCache sharedCache;
+    private final long ttlNanos;
+    private final int maxEntries;
+
+    public UserDetailsCache(ObjectProvider<SharedUserCache> sharedCache,
+                            @Value("${usercache.near.ttlMs:30000}") long ttlMs,
+                            @Value("${usercache.near.maxEntries:10000}") int maxEntries) {
+        this.sharedCache = sharedCache.getIfAvailable();
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxEntries = maxEntries;
+
+        if (this.sharedCache != null) {
+            this.sharedCache.onInvalidation(nearCache::remove);
+        }
+    }
+
+    /**
+     * Get the user from the cache, or load it and cache it
+     *
+     * @param username the username
+     * @param loader the database lookup, called on a miss of both tiers
+     * @return the user, empty if it doesn't exist
+     */
+    public Optional<CachedUser> get(String username, Function<String, Optional<CachedUser>> loader) {
+        // inside a transaction the lookup may see uncommitted changes, they must not leak into the cache
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return loader.apply(username);
+        }
+
+        long now = System.nanoTime();
+        Entry entry = nearCache.get(username);
+        if (entry != null && now - entry.expiresAt < 0) {
+            return Optional.of(entry.user);
+        }
+
+        Optional<CachedUser> user = sharedCache != null ? sharedCache.get(username) : Optional.empty();
+        if (user.isEmpty()) {
+            user = loader.apply(username);
+            if (user.isPresent() && sharedCache != null) {
+                sharedCache.put(user.get());
+            }
+        }
+
+        user.ifPresent(cachedUser -> putNear(cachedUser, now));
+        return user;
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        String username = event.getUsername();
+        evict(username);
+
+        // evict again once the change is visible, a concurrent lookup may have cached the old row meanwhile
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(username);
+                }
+            });
+        }
+    }
+
+    public int size() {
+        return nearCache.size();
+    }
+
+    private void evict(String username) {
+        nearCache.remove(username);
+        if (sharedCache != null) {
+            sharedCache.invalidate(username);
+        }
+    }
+
+    private void putNear(CachedUser user, long now) {
+        if (nearCache.size() >= maxEntries) {
+            // drop the expired entries first, then arbitrary ones, the cache only has to stay bounded
+            nearCache.values().removeIf(entry -> now - entry.expiresAt >= 0);
+            Iterator<String> keys = nearCache.keySet().iterator();
+            while (nearCache.size() >= maxEntries && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+        nearCache.put(user.getUsername(), new Entry(user, now + ttlNanos));
+    }
+
+    private static final class Entry {
+        private final CachedUser user;
+        private final long expiresAt;
+
+        private Entry(CachedUser user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
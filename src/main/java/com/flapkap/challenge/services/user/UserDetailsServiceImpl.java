@@ -1,6 +1,5 @@
 package com.flapkap.challenge.services.user;
 
-import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.repositories.UserRepository;
 import com.flapkap.challenge.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
@@ -15,14 +14,16 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        // check if the username exists in the user table
-        Optional<User> user = userRepository.findOneByUsername(username);
+        // check if the username exists in the cache, then in the user table
+        Optional<CachedUser> user = userDetailsCache.get(username,
+                key -> userRepository.findOneByUsername(key).map(CachedUser::of));
 
         if (user.isPresent()) {
-            return UserPrincipal.build(user.get());
+            return UserPrincipal.build(user.get().toUser());
         } else {
             throw new UsernameNotFoundException("User not found with username: " + username);
         }
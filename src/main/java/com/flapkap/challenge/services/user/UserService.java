@@ -6,9 +6,12 @@ import com.flapkap.challenge.dto.user.UserDTO;
 import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.services.coins.CoinProfile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.function.Consumer;
+
 public interface UserService {
 
     /**
@@ -19,6 +22,14 @@ public interface UserService {
      * */
     Page<UserDTO> getAllUsers(Pageable page);
 
+    /**
+     * Visit every user in id order, loading them in batches so the whole table never sits in memory
+     *
+     * @param batchSize the number of users loaded per query
+     * @param consumer receives every user {@link UserDTO}
+     * */
+    void forEachUser(int batchSize, Consumer<UserDTO> consumer);
+
     /**
      * Login a user
      *
@@ -85,6 +96,25 @@ public interface UserService {
      * */
     void depositMoney(Integer amount) throws BadRequestException, EntityNotFoundException;
 
+    /**
+     * Deposit money to a user account with role USER at a machine, the coin must be accepted by the machine.
+     *
+     * @param amount the amount of money to deposit
+     * @param coins the coin profile of the machine
+     * @throws BadRequestException if the amount is not one of the accepted coins
+     * @throws EntityNotFoundException if the user does not exist
+     * */
+    void depositMoney(Integer amount, CoinProfile coins) throws BadRequestException, EntityNotFoundException;
+
+    /**
+     * Charge the total of a purchase from the user account balance
+     *
+     * @param user the user to charge
+     * @param total the amount of money to charge
+     * @return the remaining balance of the user
+     * */
+    int chargeDeposit(User user, int total);
+
     /**
      * Reset the user account balance to 0
      *
@@ -4,15 +4,24 @@ import com.flapkap.challenge.dto.user.JwtResponseDTO;
 import com.flapkap.challenge.dto.user.LoginRequestDTO;
 import com.flapkap.challenge.dto.user.UserDTO;
 import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.events.UserChangedEvent;
 import com.flapkap.challenge.exceptions.BadRequestException;
 import com.flapkap.challenge.exceptions.EntityNotFoundException;
+import com.flapkap.challenge.exceptions.Rejections;
 import com.flapkap.challenge.repositories.UserRepository;
 import com.flapkap.challenge.security.JWTUtils;
 import com.flapkap.challenge.security.UserPrincipal;
-import com.flapkap.challenge.utils.AllowedPrices;
+import com.flapkap.challenge.services.coins.CoinProfile;
+import com.flapkap.challenge.services.coins.Denominations;
+import com.flapkap.challenge.services.journal.JournalEvent;
+import com.flapkap.challenge.services.journal.JournalEventType;
+import com.flapkap.challenge.services.journal.JournalService;
+import com.flapkap.challenge.services.retry.OptimisticRetryExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -20,6 +29,10 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -29,17 +42,36 @@ public class UserServiceImpl implements UserService {
     private final JWTUtils jwtUtils;
     private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
+    private final OptimisticRetryExecutor retryExecutor;
+    private final JournalService journalService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Denominations denominations;
 
     @Override
+    @Transactional(readOnly = true)
     public Page<UserDTO> getAllUsers(Pageable page) {
         return userRepository.findAll(page).map(User::toDTO);
     }
 
+    @Override
+    public void forEachUser(int batchSize, Consumer<UserDTO> consumer) {
+        long lastId = 0;
+        List<User> batch;
+        do {
+            // keyset pagination, every batch starts after the last id of the previous one
+            batch = userRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, batchSize));
+            for (User user : batch) {
+                consumer.accept(user.toDTO());
+                lastId = user.getId();
+            }
+        } while (batch.size() == batchSize);
+    }
+
     @Override
     public JwtResponseDTO loginUser(LoginRequestDTO loginRequestDTO) throws BadRequestException {
         // find user by username
         User user = userRepository.findOneByUsername(loginRequestDTO.getUsername())
-                .orElseThrow(() -> new BadRequestException("User does not exist"));
+                .orElseThrow(() -> Rejections.USER_DOES_NOT_EXIST);
 
         // Generate JWT token
         String jwt = generateJWTToken(loginRequestDTO.getUsername(), loginRequestDTO.getPassword());
@@ -60,52 +92,65 @@ public class UserServiceImpl implements UserService {
     public UserDTO createUser(User user) throws BadRequestException {
         // check if the username already exists
         if (userRepository.findOneByUsername(user.getUsername()).isPresent()) {
-            throw new BadRequestException("Username already exists");
+            throw Rejections.USERNAME_EXISTS;
         }
 
         if (user.getPassword() == null || user.getPassword().isEmpty()) {
-            throw new BadRequestException("Password is required");
+            throw Rejections.PASSWORD_REQUIRED;
         }
 
         if (user.getRole() == null) {
-            throw new BadRequestException("Role is required");
+            throw Rejections.ROLE_REQUIRED;
         }
 
         // encode the password
         user.setPassword(passwordEncoder.encode(user.getPassword()));
 
+        // a user with the same username may have been cached before it was deleted
+        publishChange(user.getUsername());
+
         return userRepository.save(user).toDTO();
     }
 
     @Override
+    @Transactional(readOnly = true)
     public User getCurrentUser() throws EntityNotFoundException {
         // get the current authenticated user
         UserPrincipal userPrincipal = (UserPrincipal) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
         // check if the user is authenticated and exists, then return the user, else throw an exception
         return userRepository.findOneByUsername(userPrincipal.getUsername())
-                .orElseThrow(() -> new EntityNotFoundException("User not found"));
+                .orElseThrow(() -> Rejections.USER_NOT_FOUND);
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDTO getUserById(Long id) throws EntityNotFoundException {
-        return userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found")).toDTO();
+        return userRepository.findById(id).orElseThrow(() -> Rejections.USER_NOT_FOUND).toDTO();
     }
 
     @Override
     public UserDTO updateUser(Long id, User user) throws BadRequestException, EntityNotFoundException {
+        return retryExecutor.execute("updateUser", () -> doUpdateUser(id, user));
+    }
+
+    private UserDTO doUpdateUser(Long id, User user) throws BadRequestException, EntityNotFoundException {
         // check if the user exists
-        User existingUser = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        User existingUser = userRepository.findById(id).orElseThrow(() -> Rejections.USER_NOT_FOUND);
 
         if (user.getUsername() == null || user.getUsername().isEmpty()) {
-            throw new BadRequestException("Username is required");
+            throw Rejections.USERNAME_REQUIRED;
         }
 
         // check if the username already exists
         if (!existingUser.getUsername().equals(user.getUsername()) && userRepository.findOneByUsername(user.getUsername()).isPresent()) {
-            throw new BadRequestException("Username already exists");
+            throw Rejections.USERNAME_EXISTS;
         }
 
+        // the cached credentials of the old and the new username are no longer valid
+        publishChange(existingUser.getUsername());
+        publishChange(user.getUsername());
+
         // set the username to the existing username
         existingUser.setUsername(user.getUsername());
 
@@ -125,6 +170,13 @@ public class UserServiceImpl implements UserService {
         if (user.getDeposit() != 0) {
             // set the deposit to the existing deposit
             existingUser.setDeposit(user.getDeposit());
+
+            // journal the new balance once it is committed
+            journalService.record(JournalEvent.builder()
+                    .type(JournalEventType.BALANCE_SET)
+                    .userId(existingUser.getId())
+                    .amount(user.getDeposit())
+                    .build());
         }
 
         // save the user
@@ -136,14 +188,31 @@ public class UserServiceImpl implements UserService {
     @Override
     public void deleteUser(Long id) throws EntityNotFoundException {
         // check if the user exists
-        User existingUser = userRepository.findById(id).orElseThrow(() -> new EntityNotFoundException("User not found"));
+        User existingUser = userRepository.findById(id).orElseThrow(() -> Rejections.USER_NOT_FOUND);
 
         // delete the user
         userRepository.delete(existingUser);
+
+        // the balance of a deleted user is gone
+        journalService.record(JournalEvent.builder()
+                .type(JournalEventType.BALANCE_SET)
+                .userId(existingUser.getId())
+                .build());
+
+        publishChange(existingUser.getUsername());
     }
 
     @Override
     public void depositMoney(Integer amount) throws BadRequestException, EntityNotFoundException {
+        depositMoney(amount, denominations.defaults());
+    }
+
+    @Override
+    public void depositMoney(Integer amount, CoinProfile coins) throws BadRequestException, EntityNotFoundException {
+        retryExecutor.run("depositMoney", () -> doDepositMoney(amount, coins));
+    }
+
+    private void doDepositMoney(Integer amount, CoinProfile coins) throws BadRequestException, EntityNotFoundException {
         // get the current authenticated user
         User existingUser = getCurrentUser();
 
@@ -153,17 +222,20 @@ public class UserServiceImpl implements UserService {
 
         // check if the amount is not empty
         if (amount == null || amount == 0) {
-            throw new BadRequestException("Amount is required");
+            throw Rejections.AMOUNT_REQUIRED;
         }
 
         // check if the amount is negative
         if (amount < 0) {
-            throw new BadRequestException("Amount cannot be negative");
+            throw Rejections.AMOUNT_NEGATIVE;
         }
 
-        // deposit must be 5, 10, 20, 50 and 100 cent coins only
-        if (!AllowedPrices.isAllowedPrice(amount)) {
-            throw new BadRequestException("Invalid amount. Please deposit 5, 10, 20, 50 or 100 cent coins.");
+        // deposit must be one of the accepted coins only
+        coins.checkDeposit(amount);
+
+        // a balance holds the coins of a single currency
+        if (existingUser.getDeposit() > 0) {
+            coins.checkBalance(existingUser.getDepositUnit());
         }
 
         // log the amount
@@ -171,16 +243,42 @@ public class UserServiceImpl implements UserService {
 
         // set the deposit to the existing deposit + the amount
         existingUser.setDeposit(existingUser.getDeposit() + amount);
+        existingUser.setDepositUnit(coins.getUnit());
 
         // log the new deposit
         log.info("New deposit: {}", existingUser.getDeposit());
 
         // save the user
         userRepository.save(existingUser);
+
+        // journal the deposit once it is committed
+        journalService.record(JournalEvent.builder()
+                .type(JournalEventType.DEPOSIT)
+                .userId(existingUser.getId())
+                .amount(amount)
+                .build());
+    }
+
+    @Override
+    public int chargeDeposit(User user, int total) {
+        // set the deposit to the existing deposit - the total
+        user.setDeposit(user.getDeposit() - total);
+        if (user.getDeposit() == 0) {
+            user.setDepositUnit(null);
+        }
+
+        // save the user
+        userRepository.save(user);
+
+        return user.getDeposit();
     }
 
     @Override
     public void resetDeposit() throws EntityNotFoundException {
+        retryExecutor.run("resetDeposit", this::doResetDeposit);
+    }
+
+    private void doResetDeposit() throws EntityNotFoundException {
         // get the current authenticated user
         User existingUser = getCurrentUser();
 
@@ -190,12 +288,25 @@ public class UserServiceImpl implements UserService {
 
         // set the deposit to 0
         existingUser.setDeposit(0);
+        existingUser.setDepositUnit(null);
 
         // log the new deposit
         log.info("New deposit: {}", existingUser.getDeposit());
 
         // save the user
         userRepository.save(existingUser);
+
+        // journal the reset once it is committed
+        journalService.record(JournalEvent.builder()
+                .type(JournalEventType.RESET)
+                .userId(existingUser.getId())
+                .build());
+    }
+
+    private void publishChange(String username) {
+        eventPublisher.publishEvent(UserChangedEvent.builder()
+                .username(username)
+                .build());
     }
 
     /**
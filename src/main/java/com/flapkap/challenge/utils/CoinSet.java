@@ -0,0 +1,64 @@
+package com.flapkap.challenge.utils;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable set of coin values backed by a bitmap indexed by the value,
+ * the lookup is a shift, a bounds check and a mask without boxing or scanning.
+ */
+public final class CoinSet {
+    private final long[] bits;
+    private final int[] values;
+    private final String description;
+
+    private CoinSet(int[] values) {
+        this.values = values;
+        this.bits = new long[(values[values.length - 1] >>> 6) + 1];
+        for (int value : values) {
+            bits[value >>> 6] |= 1L << value;
+        }
+
+        // "5, 10, 20, 50 or 100"
+        String all = Arrays.stream(values).mapToObj(Integer::toString).collect(Collectors.joining(", "));
+        int last = all.lastIndexOf(", ");
+        this.description = last < 0 ? all : all.substring(0, last) + " or " + all.substring(last + 2);
+    }
+
+    /**
+     * @param values the coin values, positive
+     * @return the set of the values
+     */
+    public static CoinSet of(int... values) {
+        int[] sorted = Arrays.stream(values).distinct().sorted().toArray();
+        if (sorted.length == 0 || sorted[0] <= 0) {
+            throw new IllegalArgumentException("Coin values must be positive: " + Arrays.toString(values));
+        }
+        return new CoinSet(sorted);
+    }
+
+    public boolean contains(int amount) {
+        // a negative amount shifts to a huge word index and fails the bounds check
+        int word = amount >>> 6;
+        return word < bits.length && (bits[word] & (1L << amount)) != 0;
+    }
+
+    /**
+     * @return the coin values in ascending order
+     */
+    public int[] values() {
+        return values.clone();
+    }
+
+    /**
+     * @return the coin values for messages, as "5, 10, 20, 50 or 100"
+     */
+    public String describe() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
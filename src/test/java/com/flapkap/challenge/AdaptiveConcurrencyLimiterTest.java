@@ -0,0 +1,142 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.config.LoadSheddingConfig;
+import com.flapkap.challenge.services.admission.AdaptiveConcurrencyLimiter;
+import com.flapkap.challenge.services.admission.AdmissionPriority;
+import com.flapkap.challenge.services.admission.RequestPriority;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.servlet.DispatcherType;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveConcurrencyLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    public void setupLimiter() {
+        // no Hikari pool, nobody ever waits for a connection
+        limiter = new AdaptiveConcurrencyLimiter(new StaticListableBeanFactory().getBeanProvider(HikariDataSource.class), 10);
+        ReflectionTestUtils.setField(limiter, "minLimit", 4);
+        ReflectionTestUtils.setField(limiter, "maxLimit", 12);
+        ReflectionTestUtils.setField(limiter, "targetLatencyMs", 100L);
+        ReflectionTestUtils.setField(limiter, "backoffRatio", 0.5);
+        ReflectionTestUtils.setField(limiter, "lowPriorityShare", 0.5);
+        ReflectionTestUtils.setField(limiter, "decreaseIntervalMs", 60000L);
+    }
+
+    private void acquire(int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire(RequestPriority.NORMAL));
+        }
+    }
+
+    private void release(int requests, long latencyNanos) {
+        for (int i = 0; i < requests; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+
+    @Test
+    public void releaseTest_growsByOnePerRoundUnderTheTargetLatency() {
+        // every fast request adds 1/limit while half of the limit is in use, half a round here
+        acquire(10);
+        release(10, FAST);
+        assertTrue(limiter.getLimit() > 10.4 && limiter.getLimit() < 10.6, String.valueOf(limiter.getLimit()));
+
+        // a single request doesn't use the limit, it doesn't grow it
+        double limit = limiter.getLimit();
+        acquire(1);
+        release(1, FAST);
+        assertEquals(limit, limiter.getLimit());
+
+        // never over the maximum
+        for (int i = 0; i < 10; i++) {
+            int round = (int) limiter.getLimit();
+            acquire(round);
+            release(round, FAST);
+        }
+        assertEquals(12, limiter.getLimit());
+    }
+
+    @Test
+    public void releaseTest_backsOffOncePerIntervalOverTheTargetLatency() {
+        acquire(3);
+        release(1, SLOW);
+        assertEquals(5, limiter.getLimit());
+
+        // the requests completing in the same interval report the same congestion
+        release(2, SLOW);
+        assertEquals(5, limiter.getLimit());
+
+        // never under the minimum
+        ReflectionTestUtils.setField(limiter, "decreaseIntervalMs", 0L);
+        acquire(2);
+        release(2, SLOW);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void tryAcquireTest_shedsTheLowPriorityRequestsFirst() {
+        // low priority requests get half of the limit
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(RequestPriority.LOW));
+        }
+        assertFalse(limiter.tryAcquire(RequestPriority.LOW));
+
+        // normal requests get the rest
+        acquire(5);
+        assertFalse(limiter.tryAcquire(RequestPriority.NORMAL));
+
+        // critical requests are never shed
+        assertTrue(limiter.tryAcquire(RequestPriority.CRITICAL));
+        assertEquals(11, limiter.getInFlight());
+    }
+
+    static class Handlers {
+        @AdmissionPriority(RequestPriority.LOW)
+        public void streamStock() {
+        }
+    }
+
+    @Test
+    public void afterConcurrentHandlingStartedTest_releasesTheSlotOfAStream() throws Exception {
+        LoadSheddingConfig interceptor = new LoadSheddingConfig(limiter);
+        HandlerMethod handler = new HandlerMethod(new Handlers(), Handlers.class.getMethod("streamStock"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/products/stream");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(request, response, handler));
+        assertEquals(1, limiter.getInFlight());
+
+        // the stream is handed over, the slot is free while it stays open
+        interceptor.afterConcurrentHandlingStarted(request, response, handler);
+        assertEquals(0, limiter.getInFlight());
+
+        // the async dispatch that completes it is neither admitted nor released again
+        request.setDispatcherType(DispatcherType.ASYNC);
+        assertTrue(interceptor.preHandle(request, response, handler));
+        interceptor.afterCompletion(request, response, handler, null);
+        assertEquals(0, limiter.getInFlight());
+
+        // a low priority request over its share is shed
+        acquire(5);
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest("GET", "/api/v1/products/stream"), shed, handler));
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertEquals(5, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,98 @@
+package com.flapkap.challenge;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.dto.product.ProductDTO;
+import com.flapkap.challenge.services.catalog.CatalogPage;
+import com.flapkap.challenge.services.catalog.CatalogPageCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogPageCacheTest {
+    private static final String ETAG = "W/\"c1\"";
+
+    private CatalogPageCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setupCache() {
+        cache = new CatalogPageCache(new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+        ReflectionTestUtils.setField(cache, "ttlMs", 60000L);
+    }
+
+    // page n holds the products 2n and 2n + 1
+    private Supplier<Page<ProductDTO>> loader(int page) {
+        return () -> {
+            loads.incrementAndGet();
+            return new PageImpl<>(List.of(product(2L * page), product(2L * page + 1)), PageRequest.of(page, 2), 100);
+        };
+    }
+
+    private static ProductDTO product(long id) {
+        return ProductDTO.builder().id(id).productName("product" + id).cost(5).amountAvailable(10).build();
+    }
+
+    private CatalogPage get(int page) {
+        return cache.get(PageRequest.of(page, 2), ETAG, loader(page));
+    }
+
+    @Test
+    public void getTest_evictsTheLeastRecentlyUsedPage() {
+        get(0);
+        get(1);
+        get(0);
+        // the third page takes the place of the page used the longest time ago
+        get(2);
+        assertEquals(3, loads.get());
+        assertEquals(2, cache.size());
+
+        get(0);
+        get(2);
+        assertEquals(3, loads.get());
+        get(1);
+        assertEquals(4, loads.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void invalidateTest_dropsThePagesOfTheProductOnly() {
+        get(0);
+        get(1);
+
+        cache.invalidate(3L);
+        get(0);
+        assertEquals(2, loads.get());
+        get(1);
+        assertEquals(3, loads.get());
+
+        // another catalog tag loads the page again
+        cache.get(PageRequest.of(0, 2), "W/\"c2\"", loader(0));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void getTest_doesNotCacheAPageLoadedAcrossAPurchaseOfItsProducts() {
+        cache.get(PageRequest.of(0, 2), ETAG, () -> {
+            cache.invalidate(1L);
+            return loader(0).get();
+        });
+        assertEquals(0, cache.size());
+
+        // a purchase of a product of another page doesn't get in the way
+        cache.get(PageRequest.of(0, 2), ETAG, () -> {
+            cache.invalidate(7L);
+            return loader(0).get();
+        });
+        assertEquals(1, cache.size());
+    }
+}
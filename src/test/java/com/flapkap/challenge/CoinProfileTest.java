@@ -0,0 +1,108 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.coins.CoinProfile;
+import com.flapkap.challenge.utils.CoinSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoinProfileTest {
+
+    // the fewest coins for every amount up to max, with a table over all the amounts
+    private static int[] fewestCoins(int[] coins, int max) {
+        int[] counts = new int[max + 1];
+        Arrays.fill(counts, 1, max + 1, Integer.MAX_VALUE);
+        for (int value = 1; value <= max; value++) {
+            for (int coin : coins) {
+                if (coin <= value && counts[value - coin] != Integer.MAX_VALUE) {
+                    counts[value] = Math.min(counts[value], counts[value - coin] + 1);
+                }
+            }
+        }
+        return counts;
+    }
+
+    private static void assertFewestCoins(int[] coins, int max) {
+        CoinProfile profile = new CoinProfile("test", CoinSet.of(coins), "cent");
+        int[] counts = fewestCoins(coins, max);
+        for (int amount = 1; amount <= max; amount++) {
+            List<Integer> change = profile.change(amount);
+            if (counts[amount] == Integer.MAX_VALUE) {
+                assertEquals(Collections.emptyList(), change, "amount " + amount);
+                continue;
+            }
+
+            assertEquals(counts[amount], change.size(), "amount " + amount);
+            assertEquals(amount, change.stream().mapToInt(Integer::intValue).sum(), "amount " + amount);
+            List<Integer> descending = new ArrayList<>(change);
+            descending.sort(Collections.reverseOrder());
+            assertEquals(descending, change, "amount " + amount);
+            for (int coin : change) {
+                assertTrue(profile.getCoins().contains(coin), "amount " + amount);
+            }
+        }
+    }
+
+    @Test
+    public void changeTest_withCanonicalCoins() {
+        assertFewestCoins(new int[]{5, 10, 20, 50, 100}, 2000);
+        assertEquals(List.of(100, 100, 50, 20, 10, 5), new CoinProfile("test", CoinSet.of(5, 10, 20, 50, 100), "cent").change(285));
+    }
+
+    @Test
+    public void changeTest_withNonCanonicalCoins() {
+        // the largest coin first would pay 6 as 4 + 1 + 1
+        assertFewestCoins(new int[]{1, 3, 4}, 500);
+        assertEquals(List.of(3, 3), new CoinProfile("test", CoinSet.of(1, 3, 4), "cent").change(6));
+
+        assertFewestCoins(new int[]{1, 15, 25}, 1000);
+        assertEquals(List.of(15, 15), new CoinProfile("test", CoinSet.of(1, 15, 25), "cent").change(30));
+    }
+
+    @Test
+    public void changeTest_withCoinsSharingADivisor() {
+        // 20 and 50 pay the multiples of 10 from 40 on, except 30
+        assertFewestCoins(new int[]{20, 50}, 2000);
+        CoinProfile profile = new CoinProfile("test", CoinSet.of(20, 50), "cent");
+        assertEquals(List.of(20, 20, 20), profile.change(60));
+        assertEquals(List.of(50, 50, 20, 20, 20), profile.change(160));
+    }
+
+    @Test
+    public void changeTest_withUnpayableAmounts() {
+        CoinProfile profile = new CoinProfile("test", CoinSet.of(20, 50), "cent");
+        assertEquals(Collections.emptyList(), profile.change(0));
+        assertEquals(Collections.emptyList(), profile.change(-20));
+        assertEquals(Collections.emptyList(), profile.change(35));
+        assertEquals(Collections.emptyList(), profile.change(10));
+        assertEquals(Collections.emptyList(), profile.change(30));
+    }
+
+    @Test
+    public void changeTest_withAmountsBeyondTheTable() {
+        // the table of 1, 15, 25 stops at 24 * 15, larger amounts take the largest coins first
+        CoinProfile profile = new CoinProfile("test", CoinSet.of(1, 15, 25), "cent");
+        int[] counts = fewestCoins(new int[]{1, 15, 25}, 100_030);
+        assertEquals(counts[100_030], profile.change(100_030).size());
+        assertEquals(100_030, profile.change(100_030).stream().mapToInt(Integer::intValue).sum());
+
+        List<Integer> large = new CoinProfile("test", CoinSet.of(5, 10, 20, 50, 100), "cent").change(Integer.MAX_VALUE - 2);
+        assertEquals(Integer.MAX_VALUE - 2L, large.stream().mapToLong(Integer::longValue).sum());
+    }
+
+    @Test
+    public void coinProfileTest_rejectsCoinsTooFarApart() {
+        // 1000 and 1999 share no divisor, the table would need 1998 * 1000 amounts
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new CoinProfile("test", CoinSet.of(1000, 1999), "cent"));
+        assertTrue(e.getMessage().contains("too far apart"), e.getMessage());
+
+        // large coins sharing a divisor count in that divisor, 20000 and 50000 need a table up to 5
+        assertEquals(List.of(50000, 20000, 20000, 20000), new CoinProfile("test", CoinSet.of(20000, 50000), "cent").change(110000));
+    }
+}
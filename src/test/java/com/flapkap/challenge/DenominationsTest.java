@@ -0,0 +1,79 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.coins.CoinProfile;
+import com.flapkap.challenge.services.coins.Denominations;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DenominationsTest {
+
+    @TempDir
+    Path directory;
+
+    private static void write(Path file, String content, long modified) throws IOException {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified));
+    }
+
+    @Test
+    public void reloadIfChangedTest_swapsTheProfilesAtOnce() throws IOException {
+        Path file = directory.resolve("coins.properties");
+        write(file, "eu.coins=5,10,20,50,100,200\neu.unit=euro cent\nmachine.42=eu\n", 1000);
+        Denominations denominations = new Denominations(new int[]{5, 10, 20, 50, 100}, "cent", file.toString());
+
+        CoinProfile eu = denominations.forMachine(42L);
+        assertEquals("eu", eu.getName());
+        assertEquals("euro cent", eu.getUnit());
+        assertSame(denominations.defaults(), denominations.forMachine(7L));
+
+        write(file, "us.coins=1,5,10,25\nus.unit=us cent\nmachine.42=us\nmachine.7=us\n", 2000);
+        denominations.reloadIfChanged();
+
+        assertEquals("us", denominations.forMachine(42L).getName());
+        assertSame(denominations.forMachine(42L), denominations.forMachine(7L));
+        assertNull(denominations.getProfile("eu"));
+        // a purchase holding the old profile keeps using it
+        assertEquals("euro cent", eu.getUnit());
+        assertTrue(eu.getCoins().contains(200));
+    }
+
+    @Test
+    public void reloadIfChangedTest_keepsTheProfilesOfAMalformedFile() throws IOException {
+        Path file = directory.resolve("coins.properties");
+        write(file, "eu.coins=5,10,20,50,100,200\nmachine.42=eu\n", 1000);
+        Denominations denominations = new Denominations(new int[]{5, 10, 20, 50, 100}, "cent", file.toString());
+        CoinProfile eu = denominations.forMachine(42L);
+
+        for (String malformed : new String[]{
+                "eu.coins=5,ten\nmachine.42=eu\n",
+                "eu.coins=5,10\nmachine.42=us\n",
+                "eu.coins=0,5\nmachine.42=eu\n",
+                "eu.coins=1000,1999\nmachine.42=eu\n"}) {
+            write(file, malformed, 2000);
+            denominations.reloadIfChanged();
+            assertSame(eu, denominations.forMachine(42L), malformed);
+            assertSame(eu, denominations.getProfile("eu"), malformed);
+        }
+
+        // the file is read again once it changed
+        write(file, "eu.coins=10,20\nmachine.42=eu\n", 3000);
+        denominations.reloadIfChanged();
+        assertNotSame(eu, denominations.forMachine(42L));
+        assertEquals("[10, 20]", denominations.forMachine(42L).getCoins().toString());
+    }
+
+    @Test
+    public void reloadIfChangedTest_keepsTheDefaultsWithoutAFile() {
+        Denominations denominations = new Denominations(new int[]{5, 10, 20, 50, 100}, "cent", "");
+        denominations.reloadIfChanged();
+        assertSame(denominations.defaults(), denominations.forMachine(42L));
+        assertEquals(Denominations.DEFAULT_PROFILE, denominations.defaults().getName());
+    }
+}
@@ -0,0 +1,75 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.compression.GzipResponseWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GzipResponseWrapperTest {
+
+    /**
+     * A container response supporting non-blocking writes, the mock response doesn't
+     */
+    static class NonBlockingResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private WriteListener listener;
+        private final ServletOutputStream outputStream = new ServletOutputStream() {
+            @Override
+            public void write(int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                listener = writeListener;
+            }
+        };
+
+        NonBlockingResponse() {
+            super(new MockHttpServletResponse());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return outputStream;
+        }
+    }
+
+    @Test
+    public void setWriteListenerTest_writesTheBodyAsIs() throws Exception {
+        NonBlockingResponse response = new NonBlockingResponse();
+        GzipResponseWrapper wrapper = new GzipResponseWrapper(response);
+        wrapper.compressFrom(0);
+
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+        };
+        ServletOutputStream outputStream = wrapper.getOutputStream();
+        outputStream.setWriteListener(listener);
+        assertSame(listener, response.listener);
+        assertTrue(outputStream.isReady());
+
+        outputStream.write("event".getBytes(StandardCharsets.UTF_8));
+        wrapper.finish();
+        assertEquals("event", response.body.toString(StandardCharsets.UTF_8));
+        assertNull(response.getHeader("Content-Encoding"));
+    }
+}
@@ -0,0 +1,118 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.health.HikariPoolHealthIndicator;
+import com.flapkap.challenge.services.health.PurchaseLatency;
+import com.flapkap.challenge.services.health.PurchaseLatencyHealthIndicator;
+import com.flapkap.challenge.services.health.QueueDepthHealthIndicator;
+import com.flapkap.challenge.services.journal.JournalService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.actuate.health.HealthEndpointGroup;
+import org.springframework.boot.actuate.health.HealthEndpointGroups;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+public class HealthIndicatorsTest {
+
+    @Autowired
+    private HealthEndpointGroups healthEndpointGroups;
+
+    @Test
+    public void readinessTest_leavesTheLoadSignalsOut() {
+        HealthEndpointGroup readiness = healthEndpointGroups.get("readiness");
+        assertTrue(readiness.isMember("readinessState"));
+        assertTrue(readiness.isMember("db"));
+        for (String loadSignal : new String[]{"hikariPool", "purchaseLatency", "queueDepth", "cacheWarmth"}) {
+            assertFalse(readiness.isMember(loadSignal), loadSignal);
+            assertTrue(healthEndpointGroups.get("load").isMember(loadSignal), loadSignal);
+        }
+    }
+
+    @Test
+    public void hikariPoolTest_isOutOfServiceWhileThePoolIsSaturated() throws Exception {
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl("jdbc:h2:mem:health-pool");
+            dataSource.setPoolName("health-pool");
+            dataSource.setMaximumPoolSize(2);
+            HikariPoolHealthIndicator indicator = new HikariPoolHealthIndicator(
+                    new StaticListableBeanFactory(Map.of("dataSource", dataSource)).getBeanProvider(HikariDataSource.class));
+            ReflectionTestUtils.setField(indicator, "maxThreadsAwaiting", 5);
+            ReflectionTestUtils.setField(indicator, "maxSaturation", 0.95);
+
+            try (Connection first = dataSource.getConnection()) {
+                assertEquals(Status.UP, indicator.health().getStatus());
+                try (Connection second = dataSource.getConnection()) {
+                    assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+                }
+            }
+            assertEquals(Status.UP, indicator.health().getStatus());
+        }
+    }
+
+    @Test
+    public void purchaseLatencyTest_isOutOfServiceOverTheP99Limit() {
+        PurchaseLatency purchaseLatency = new PurchaseLatency(new SimpleMeterRegistry(), 60);
+        PurchaseLatencyHealthIndicator indicator = new PurchaseLatencyHealthIndicator(purchaseLatency);
+        ReflectionTestUtils.setField(indicator, "maxP99Ms", 500.0);
+
+        for (int i = 0; i < 100; i++) {
+            purchaseLatency.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(Status.UP, indicator.health().getStatus());
+
+        for (int i = 0; i < 10; i++) {
+            purchaseLatency.record(TimeUnit.SECONDS.toNanos(2));
+        }
+        assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+    }
+
+    @Test
+    public void queueDepthTest_isOutOfServiceOverTheMaxDepth() throws Exception {
+        ThreadPoolTaskExecutor salesExecutor = new ThreadPoolTaskExecutor();
+        salesExecutor.setCorePoolSize(1);
+        salesExecutor.setMaxPoolSize(1);
+        salesExecutor.initialize();
+        JournalService journalService = Mockito.mock(JournalService.class);
+        QueueDepthHealthIndicator indicator = new QueueDepthHealthIndicator(salesExecutor, journalService);
+        ReflectionTestUtils.setField(indicator, "maxDepth", 2);
+
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // the first task holds the only thread, the others wait in the queue
+            for (int i = 0; i < 3; i++) {
+                salesExecutor.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertEquals(Status.UP, indicator.health().getStatus());
+
+            salesExecutor.execute(() -> { });
+            assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+
+            release.countDown();
+            Mockito.when(journalService.getQueueDepth()).thenReturn(3);
+            assertEquals(Status.OUT_OF_SERVICE, indicator.health().getStatus());
+        } finally {
+            release.countDown();
+            salesExecutor.shutdown();
+        }
+    }
+}
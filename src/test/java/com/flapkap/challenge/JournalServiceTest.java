@@ -0,0 +1,145 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.journal.JournalEvent;
+import com.flapkap.challenge.services.journal.JournalEventType;
+import com.flapkap.challenge.services.journal.JournalServiceImpl;
+import com.flapkap.challenge.services.journal.JournalState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalServiceTest {
+    private static final int RECORD_SIZE = (int) ReflectionTestUtils.getField(JournalServiceImpl.class, "RECORD_SIZE");
+
+    @TempDir
+    Path directory;
+
+    private JournalServiceImpl journal;
+
+    private JournalServiceImpl start(int segmentRecords, int snapshotEvery) throws IOException {
+        JournalServiceImpl started = new JournalServiceImpl();
+        ReflectionTestUtils.setField(started, "enabled", true);
+        ReflectionTestUtils.setField(started, "directory", directory.toString());
+        ReflectionTestUtils.setField(started, "segmentSize", segmentRecords * RECORD_SIZE);
+        ReflectionTestUtils.setField(started, "snapshotEvery", snapshotEvery);
+        ReflectionTestUtils.setField(started, "maxBatchSize", 512);
+        ReflectionTestUtils.setField(started, "appendTimeoutMs", 2000L);
+        started.start();
+        journal = started;
+        return started;
+    }
+
+    private JournalServiceImpl restart(int segmentRecords, int snapshotEvery) throws Exception {
+        journal.stop();
+        return start(segmentRecords, snapshotEvery);
+    }
+
+    private static JournalEvent deposit(long userId, int amount) {
+        return JournalEvent.builder().type(JournalEventType.DEPOSIT).userId(userId).amount(amount).build();
+    }
+
+    private static JournalEvent purchase(long userId, long productId, int quantity, int amount) {
+        return JournalEvent.builder().type(JournalEventType.PURCHASE)
+                .userId(userId).productId(productId).quantity(quantity).amount(amount).build();
+    }
+
+    private static JournalEvent stock(long productId, int quantity) {
+        return JournalEvent.builder().type(JournalEventType.STOCK_SET).productId(productId).quantity(quantity).build();
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void replayTest_returnsTheStateOfEveryAppendedEvent() throws Exception {
+        start(64, 1000);
+        journal.record(stock(7, 10));
+        journal.record(deposit(1, 200));
+        journal.record(purchase(1, 7, 3, 150));
+        journal.record(JournalEvent.builder().type(JournalEventType.BALANCE_SET).userId(2).amount(90).build());
+
+        JournalState replayed = restart(64, 1000).getState();
+        assertEquals(4, replayed.getSequence());
+        assertEquals(50, replayed.getBalance(1));
+        assertEquals(90, replayed.getBalance(2));
+        assertEquals(7, replayed.getStock(7));
+
+        journal.record(JournalEvent.builder().type(JournalEventType.PRODUCT_DELETE).productId(7).build());
+        assertEquals(5, journal.getState().getSequence());
+        assertEquals(0, journal.getState().getStock(7));
+    }
+
+    @Test
+    public void replayTest_withTornTail_stopsAtTheLastCompleteRecord() throws Exception {
+        start(64, 1000);
+        journal.record(deposit(1, 100));
+        journal.record(deposit(1, 50));
+        journal.record(deposit(1, 20));
+        journal.stop();
+
+        // a crash in the middle of the third record leaves it half written
+        try (RandomAccessFile segment = new RandomAccessFile(files("segment-").get(0).toFile(), "rw")) {
+            segment.seek(2L * RECORD_SIZE + RECORD_SIZE / 2);
+            segment.write(new byte[RECORD_SIZE / 2]);
+        }
+
+        JournalState replayed = start(64, 1000).getState();
+        assertEquals(2, replayed.getSequence());
+        assertEquals(150, replayed.getBalance(1));
+
+        // the next event takes the place of the torn record
+        journal.record(deposit(1, 5));
+        replayed = restart(64, 1000).getState();
+        assertEquals(3, replayed.getSequence());
+        assertEquals(155, replayed.getBalance(1));
+    }
+
+    @Test
+    public void replayTest_startsFromTheSnapshot() throws Exception {
+        // two records per segment and a snapshot every four events
+        start(2, 4);
+        journal.record(deposit(1, 100));
+        journal.record(stock(7, 10));
+        journal.record(purchase(1, 7, 2, 40));
+        journal.record(deposit(2, 30));
+        journal.record(purchase(2, 7, 1, 20));
+        journal.stop();
+
+        List<Path> snapshots = files("snapshot-");
+        assertEquals(1, snapshots.size());
+        assertTrue(snapshots.get(0).getFileName().toString().contains("00000000000000000004"));
+
+        // the segments covered by the snapshot are not read by the replay
+        List<Path> segments = files("segment-");
+        assertEquals(3, segments.size());
+        Files.delete(segments.get(0));
+        Files.delete(segments.get(1));
+
+        JournalState replayed = start(2, 4).getState();
+        assertEquals(5, replayed.getSequence());
+        assertEquals(60, replayed.getBalance(1));
+        assertEquals(10, replayed.getBalance(2));
+        assertEquals(7, replayed.getStock(7));
+    }
+
+    @AfterEach
+    public void stopJournal() throws InterruptedException {
+        if (journal != null) {
+            journal.stop();
+        }
+    }
+}
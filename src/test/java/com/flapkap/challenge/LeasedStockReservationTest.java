@@ -0,0 +1,160 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.entities.Product;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.exceptions.BadRequestException;
+import com.flapkap.challenge.exceptions.Rejections;
+import com.flapkap.challenge.repositories.ProductRepository;
+import com.flapkap.challenge.repositories.StockLeaseRepository;
+import com.flapkap.challenge.repositories.UserRepository;
+import com.flapkap.challenge.services.inventory.LeasedStockReservationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes sharing one database, every purchase commits, so the rows are removed after each test.
+ * */
+@SpringBootTest
+public class LeasedStockReservationTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private StockLeaseRepository stockLeaseRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private LeasedStockReservationService nodeA;
+    private LeasedStockReservationService nodeB;
+
+    @BeforeEach
+    public void setupNodes() {
+        User seller = new User();
+        seller.setUsername("leaseSeller");
+        seller.setPassword("testpassword");
+        seller.setRole(UserRole.ROLE_SELLER);
+        seller = userRepository.save(seller);
+        jdbc.execute("INSERT INTO products (id, product_name, cost, amount_available, seller_id) VALUES (800, 'leasedProduct', 50, 12, " + seller.getId() + ")");
+
+        nodeA = node("node-a");
+        nodeB = node("node-b");
+    }
+
+    private LeasedStockReservationService node(String nodeId) {
+        LeasedStockReservationService node = new LeasedStockReservationService(productRepository, stockLeaseRepository, transactionTemplate, nodeId);
+        ReflectionTestUtils.setField(node, "leaseChunk", 5);
+        ReflectionTestUtils.setField(node, "leaseTtlMs", 60000L);
+        ReflectionTestUtils.setField(node, "expiryGraceMs", 0L);
+        return node;
+    }
+
+    /**
+     * Reserve in a purchase transaction of its own
+     *
+     * @return the stock left to sell after the purchase
+     */
+    private int buy(LeasedStockReservationService node, int quantity) {
+        return transactionTemplate.execute(status -> {
+            Product product = productRepository.findById(800L).orElseThrow();
+            node.reserve(product, quantity);
+            return node.available(product);
+        });
+    }
+
+    private int unleased() {
+        return productRepository.findAmountAvailableById(800L).orElseThrow();
+    }
+
+    @Test
+    public void reserveTest_everyNodeSellsFromItsOwnLease() {
+        // each node leases a chunk of five, the stock left counts the product row and both leases
+        assertEquals(11, buy(nodeA, 1));
+        assertEquals(10, buy(nodeB, 1));
+        assertEquals(2, unleased());
+
+        // node A sells the rest of its lease without touching the product row
+        assertEquals(6, buy(nodeA, 4));
+        assertEquals(2, unleased());
+
+        // node B still holds four, node A can't lease three more
+        BadRequestException rejection = assertThrows(BadRequestException.class, () -> buy(nodeA, 3));
+        assertSame(Rejections.NOT_ENOUGH_PRODUCTS, rejection);
+
+        // once node B stops its stock is back on the product
+        nodeB.returnNodeLeases();
+        assertEquals(6, unleased());
+        assertEquals(3, buy(nodeA, 3));
+    }
+
+    @Test
+    public void returnExpiredLeasesTest_returnsTheStockOfAnotherNode() throws InterruptedException {
+        ReflectionTestUtils.setField(nodeB, "leaseTtlMs", 0L);
+        buy(nodeB, 2);
+        assertEquals(7, unleased());
+        Thread.sleep(10);
+
+        // node A reaps the expired lease of node B
+        nodeA.returnExpiredLeases();
+        assertEquals(10, unleased());
+        assertTrue(stockLeaseRepository.findByNodeId("node-b").isEmpty());
+    }
+
+    @Test
+    public void reserveTest_concurrentNodesNeverOversell() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> nodes = new ArrayList<>();
+            for (LeasedStockReservationService node : List.of(nodeA, nodeB)) {
+                nodes.add(pool.submit(() -> {
+                    for (int i = 0; i < 10; i++) {
+                        try {
+                            buy(node, 1);
+                            sold.incrementAndGet();
+                        } catch (BadRequestException e) {
+                            // sold out on this node
+                        }
+                    }
+                }));
+            }
+            for (Future<?> node : nodes) {
+                node.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        nodeA.returnNodeLeases();
+        nodeB.returnNodeLeases();
+        assertTrue(sold.get() <= 12);
+        assertEquals(12 - sold.get(), unleased());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbc.execute("DELETE FROM stock_leases WHERE product_id = 800");
+        jdbc.execute("DELETE FROM products WHERE id = 800");
+        jdbc.execute("DELETE FROM users WHERE username = 'leaseSeller'");
+    }
+}
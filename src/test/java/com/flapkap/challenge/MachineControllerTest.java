@@ -0,0 +1,287 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.entities.Machine;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.repositories.MachineRepository;
+import com.flapkap.challenge.repositories.ProductRepository;
+import com.flapkap.challenge.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+public class MachineControllerTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private MachineRepository machineRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private String adminToken;
+    private String sellerToken;
+    private String buyerToken;
+    private Long machineId;
+
+    @BeforeEach
+    public void setupDatabase() throws Exception {
+        User admin = new User();
+        admin.setUsername("testAdmin");
+        admin.setPassword(passwordEncoder.encode("testpassword"));
+        admin.setRole(UserRole.ROLE_ADMIN);
+        userRepository.save(admin);
+
+        User seller = new User();
+        seller.setUsername("testSeller");
+        seller.setPassword(passwordEncoder.encode("testpassword"));
+        seller.setRole(UserRole.ROLE_SELLER);
+        seller = userRepository.save(seller);
+
+        User buyer = new User();
+        buyer.setUsername("testBuyer");
+        buyer.setPassword(passwordEncoder.encode("testpassword"));
+        buyer.setRole(UserRole.ROLE_BUYER);
+        userRepository.save(buyer);
+
+        jdbc.execute("INSERT INTO products (id, product_name, cost, amount_available, seller_id) VALUES (100, 'testProduct1', 50, 10, " + seller.getId() + ")");
+
+        // the machine id is generated, so every test starts with a machine no other test has cached
+        Machine machine = machineRepository.save(Machine.builder().name("testMachine").location("Lobby").build());
+        machineId = machine.getId();
+        jdbc.execute("INSERT INTO machine_slots (machine_id, slot_code, product_id, capacity, quantity) VALUES (" + machineId + ", 'A1', 100, 8, 5)");
+        jdbc.execute("INSERT INTO machine_slots (machine_id, slot_code) VALUES (" + machineId + ", 'A2')");
+
+        adminToken = login("testAdmin");
+        sellerToken = login("testSeller");
+        buyerToken = login("testBuyer");
+    }
+
+    private String login(String username) throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"" + username + "\",\"password\":\"testpassword\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // parse the response and get the token
+        return response.substring(response.indexOf("token") + 8, response.indexOf("type") - 3);
+    }
+
+    @Test
+    public void createMachineTest_withAdminToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType("application/json")
+                        .content("{\"name\":\"testMachine2\",\"location\":\"Gym\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.message").value("Machine has been created successfully"))
+                .andExpect(jsonPath("$.data.name").value("testMachine2"));
+
+        assertTrue(machineRepository.findByName("testMachine2").isPresent());
+    }
+
+    @Test
+    public void createMachineTest_withSellerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/")
+                        .header("Authorization", "Bearer " + sellerToken)
+                        .contentType("application/json")
+                        .content("{\"name\":\"testMachine2\",\"location\":\"Gym\"}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void createMachineTest_withExistingName() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .contentType("application/json")
+                        .content("{\"name\":\"testMachine\",\"location\":\"Gym\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void getSlotsTest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/machines/" + machineId + "/slots")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].slotCode").value("A1"))
+                .andExpect(jsonPath("$[0].capacity").value(8))
+                .andExpect(jsonPath("$[0].quantity").value(5))
+                .andExpect(jsonPath("$[0].productName").value("testProduct1"))
+                .andExpect(jsonPath("$[0].cost").value(50))
+                .andExpect(jsonPath("$[1].slotCode").value("A2"))
+                .andExpect(jsonPath("$[1].productId").doesNotExist());
+    }
+
+    @Test
+    public void getSlotsTest_withIncorrectMachineId() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/machines/0/slots")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void assignSlotTest_withSellerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/machines/" + machineId + "/slots/A2")
+                        .header("Authorization", "Bearer " + sellerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("productId", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Slot has been updated successfully"))
+                .andExpect(jsonPath("$.data.productId").value(100));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/machines/" + machineId + "/slots")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1].productId").value(100));
+    }
+
+    @Test
+    public void depositMoneyTest_withBuyerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/machines/" + machineId + "/deposit/50")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Money has been deposited successfully"));
+
+        assertEquals(50, userRepository.findByUsername("testBuyer").get().getDeposit());
+    }
+
+    @Test
+    public void depositMoneyTest_withInvalidCoin() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/machines/" + machineId + "/deposit/15")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void buyProductTest_withBuyerToken() throws Exception {
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(120);
+        userRepository.save(buyer);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/slots/A1/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Product has been bought successfully"))
+                .andExpect(jsonPath("$.data.total").value(100))
+                .andExpect(jsonPath("$.data.change").value(20))
+                .andExpect(jsonPath("$.data.coins[0]").value(20))
+                .andExpect(jsonPath("$.data.product.id").value(100));
+
+        // the items come from the slot, the product stock is untouched
+        assertEquals(3, slotQuantity("A1"));
+        assertEquals(10, productRepository.findById(100L).get().getAmountAvailable());
+    }
+
+    @Test
+    public void buyProductTest_afterTheSlotGotAnotherProductOnAnotherNode() throws Exception {
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(100);
+        userRepository.save(buyer);
+
+        // the listing caches the slot with the first product
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/machines/" + machineId + "/slots")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(jsonPath("$[0].productId").value(100));
+
+        // another node puts another product in the slot, this node sees no event
+        jdbc.execute("INSERT INTO products (id, product_name, cost, amount_available, seller_id) " +
+                "SELECT 101, 'testProduct2', 100, 20, seller_id FROM products WHERE id = 100");
+        jdbc.execute("UPDATE machine_slots SET product_id = 101, quantity = 2 WHERE machine_id = " + machineId + " AND slot_code = 'A1'");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/slots/A1/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.total").value(100))
+                .andExpect(jsonPath("$.data.product.id").value(101));
+
+        assertEquals(1, slotQuantity("A1"));
+    }
+
+    @Test
+    public void buyProductTest_withAmountGreaterThanTheSlotQuantity() throws Exception {
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(500);
+        userRepository.save(buyer);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/slots/A1/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "6"))
+                .andExpect(status().isBadRequest());
+
+        assertEquals(5, slotQuantity("A1"));
+    }
+
+    @Test
+    public void restockTest_withSellerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/restock")
+                        .header("Authorization", "Bearer " + sellerToken)
+                        .contentType("application/json")
+                        .content("[{\"slotCode\":\"A1\",\"delta\":10},{\"slotCode\":\"A2\",\"delta\":5},{\"slotCode\":\"Z9\",\"delta\":5}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Machine has been restocked successfully"))
+                .andExpect(jsonPath("$.data.updated").value(1))
+                .andExpect(jsonPath("$.data.skipped[0]").value("A2"))
+                .andExpect(jsonPath("$.data.skipped[1]").value("Z9"));
+
+        // the slot is filled up to its capacity
+        assertEquals(8, slotQuantity("A1"));
+    }
+
+    @Test
+    public void restockTest_withBuyerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/restock")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType("application/json")
+                        .content("[{\"slotCode\":\"A1\",\"delta\":1}]"))
+                .andExpect(status().isForbidden());
+    }
+
+    private int slotQuantity(String slotCode) {
+        return jdbc.queryForObject("SELECT quantity FROM machine_slots WHERE machine_id = ? AND slot_code = ?",
+                Integer.class, machineId, slotCode);
+    }
+
+    @Test
+    public void buyProductTest_withEmptySlot() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/slots/A2/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "1"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void buyProductTest_withIncorrectSlot() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/machines/" + machineId + "/slots/Z9/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "1"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,84 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.events.SlotStockChangedEvent;
+import com.flapkap.challenge.services.machine.MachineState;
+import com.flapkap.challenge.services.machine.MachineStateCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MachineStateCacheTest {
+
+    private MachineStateCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    public void setupCache() {
+        cache = new MachineStateCache();
+        ReflectionTestUtils.setField(cache, "maxEntries", 2);
+    }
+
+    private Supplier<MachineState> loader(long machineId) {
+        return () -> {
+            loads.incrementAndGet();
+            return MachineState.of(machineId, List.of());
+        };
+    }
+
+    private void get(long machineId) {
+        cache.get(machineId, loader(machineId));
+    }
+
+    @Test
+    public void getTest_evictsTheLeastRecentlyUsedMachine() {
+        get(1);
+        get(2);
+        get(1);
+        get(3);
+        assertEquals(3, loads.get());
+        assertEquals(2, cache.size());
+
+        // the second machine was used the longest time ago
+        get(1);
+        get(3);
+        assertEquals(3, loads.get());
+        get(2);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    public void evictTest_keepsNothingForTheMachinesNotLoaded() {
+        for (long machineId = 1; machineId <= 100; machineId++) {
+            cache.evict(machineId);
+            cache.onSlotStockChanged(SlotStockChangedEvent.builder().machineId(machineId).slotCode("A1").delta(-1).build());
+        }
+        assertEquals(0, cache.size());
+
+        // the changes of other machines left room for the machines in use
+        get(1);
+        get(2);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void getTest_doesNotCacheAStateLoadedAcrossAChangeOfItsMachine() {
+        cache.get(1L, () -> {
+            cache.onSlotStockChanged(SlotStockChangedEvent.builder().machineId(1L).slotCode("A1").delta(-1).build());
+            return loader(1).get();
+        });
+        assertEquals(0, cache.size());
+
+        // a change of another machine doesn't get in the way
+        cache.get(1L, () -> {
+            cache.evict(2L);
+            return loader(1).get();
+        });
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,90 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.retry.OptimisticRetryExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OptimisticRetryExecutorTest {
+
+    private MeterRegistry meterRegistry;
+    private OptimisticRetryExecutor retryExecutor;
+
+    @BeforeEach
+    public void setupExecutor() {
+        // transactions that only exist for the template, the actions don't touch a database
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        retryExecutor = new OptimisticRetryExecutor(transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(retryExecutor, "maxAttempts", 3);
+        ReflectionTestUtils.setField(retryExecutor, "baseDelayMs", 1L);
+        ReflectionTestUtils.setField(retryExecutor, "maxDelayMs", 2L);
+    }
+
+    @Test
+    public void executeTest_retriesOutsideOfTheGuard() {
+        List<String> steps = new ArrayList<>();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryExecutor.execute("buyProduct", attempt -> {
+            steps.add("lock");
+            try {
+                return attempt.get();
+            } finally {
+                steps.add("unlock");
+            }
+        }, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "bought";
+        });
+
+        assertEquals("bought", result);
+        // the guard is released after every attempt, the backoff runs between the attempts
+        assertEquals(List.of("lock", "unlock", "lock", "unlock", "lock", "unlock"), steps);
+        assertEquals(2, meterRegistry.get("vending.retry.retries").tag("operation", "buyProduct").counter().count());
+        assertNull(meterRegistry.find("vending.retry.exhausted").counter());
+    }
+
+    @Test
+    public void executeTest_countsTheOperationsThatGiveUp() {
+        assertThrows(OptimisticLockingFailureException.class, () -> retryExecutor.execute("depositMoney", () -> {
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+
+        assertEquals(2, meterRegistry.get("vending.retry.retries").tag("operation", "depositMoney").counter().count());
+        assertEquals(1, meterRegistry.get("vending.retry.exhausted").tag("operation", "depositMoney").counter().count());
+    }
+}
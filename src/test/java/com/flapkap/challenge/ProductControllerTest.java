@@ -1,11 +1,17 @@
 package com.flapkap.challenge;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.flapkap.challenge.controllers.ProductController;
 import com.flapkap.challenge.entities.Product;
 import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.events.ProductChangedEvent;
 import com.flapkap.challenge.repositories.ProductRepository;
 import com.flapkap.challenge.repositories.UserRepository;
+import com.flapkap.challenge.services.catalog.CatalogVersion;
 import com.flapkap.challenge.services.product.ProductService;
+import com.flapkap.challenge.services.stock.StockStreamServiceImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,10 +22,17 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -40,6 +53,14 @@ public class ProductControllerTest {
     private MockMvc mockMvc;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private StockStreamServiceImpl stockStreamService;
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private ProductController productController;
+    @PersistenceContext
+    private EntityManager entityManager;
 
     private String adminToken;
     private String sellerToken;
@@ -133,12 +154,176 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.productName").value("testProduct1"));
     }
 
+    @Test
+    public void getAllProductsTest_withMatchingEtag() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getAllProductsTest_withEtagAfterAChangeOnAnotherNode() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // another node commits the change, no event reaches this node until the refresh interval passed
+        jdbc.execute("UPDATE products SET cost = 60, version = version + 1 WHERE id = 100");
+        jdbc.execute("UPDATE catalog_revisions SET revision = revision + 1");
+        catalogVersion.expire();
+        // the products loaded by the first request belong to this node's persistence context, not the other node's
+        entityManager.clear();
+
+        String newEtag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].cost").value(60))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, newEtag);
+    }
+
+    @Test
+    public void getAllProductsTest_withEtagAfterAPurchase() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertTrue(etag.startsWith("W/"));
+
+        // the stock isn't part of the catalog version
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(100);
+        userRepository.save(buyer);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/products/100/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "1"))
+                .andExpect(status().isOk());
+        catalogVersion.expire();
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // an update of the product is
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/products/100")
+                        .header("Authorization", "Bearer " + sellerToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productName\":\"testProduct1\",\"cost\":100,\"amountAvailable\":10}"))
+                .andExpect(status().isOk());
+        // the test transaction never commits, the tag is read again as it would be after the commit
+        catalogVersion.expire();
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].cost").value(100));
+    }
+
+    @Test
+    public void getAllProductsTest_withAcceptEncoding() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(result -> assertEquals(1, Collections.frequency(result.getResponse().getHeaders("Vary"), "Accept-Encoding")));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("Accept-Encoding", "*;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("Accept-Encoding", "gzip;q=0, identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.content.length()").value(2));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .header("Accept-Encoding", "*, gzip;q=0.0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"));
+    }
+
+    @Test
+    public void getAllProductsTest_withAPageOverTheUserListingLimit() throws Exception {
+        // the page size cap of the user listing doesn't apply to the catalog
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/?size=500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(500));
+    }
+
+    @Test
+    public void getProductByIdTest_withMatchingEtag() throws Exception {
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/100"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/100")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/101")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.productName").value("testProduct2"));
+    }
+
     @Test
     public void getProductByIdTest_withIncorrectProductId() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/3"))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void getAllProductsTest_withAcceptCbor() throws Exception {
+        String jsonEtag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        // the binary representation has its own tag, the JSON one doesn't match it
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header("If-None-Match", jsonEtag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn();
+        String cborEtag = result.getResponse().getHeader("ETag");
+        assertNotEquals(jsonEtag, cborEtag);
+        assertTrue(cborEtag.endsWith("-cbor\""));
+
+        JsonNode product = new CBORMapper().readTree(result.getResponse().getContentAsByteArray()).get("content").get(0);
+        assertEquals("testProduct1", product.get("n").asText());
+        assertEquals(50, product.get("c").asInt());
+        assertEquals(10, product.get("a").asInt());
+        assertFalse(product.has("productName"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header("If-None-Match", cborEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void getProductByIdTest_withAcceptCborAndIncorrectProductId() throws Exception {
+        byte[] body = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/3")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isNotFound())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // the short keys of the response and no human readable message
+        JsonNode response = new CBORMapper().readTree(body);
+        assertFalse(response.get("ok").asBoolean());
+        assertFalse(response.has("message"));
+        assertFalse(response.has("success"));
+    }
+
     @Test
     public void getMyProductsTest_withAdminToken() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/my-products")
@@ -513,6 +698,7 @@ public class ProductControllerTest {
                 .andExpect(jsonPath("$.message").value("Product has been bought successfully"))
                 .andExpect(jsonPath("$.data.total").value(100))
                 .andExpect(jsonPath("$.data.change").value(20))
+                .andExpect(jsonPath("$.data.coins[0]").value(20))
                 .andExpect(jsonPath("$.data.product.productName").value("testProduct1"))
                 .andExpect(jsonPath("$.data.product.cost").value(50))
                 .andExpect(jsonPath("$.data.amount").value(2));
@@ -522,6 +708,33 @@ public class ProductControllerTest {
         assertEquals(8, productRepository.findByProductName("testProduct1").get().getAmountAvailable());
     }
 
+    @Test
+    public void buyProductTest_withBuyerTokenAndTheUnscopedEndpointsOff() throws Exception {
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(100);
+        userRepository.save(buyer);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/products/100/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Deprecation", "true"));
+
+        ReflectionTestUtils.setField(productController, "unscopedEndpoints", false);
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/products/100/buy")
+                            .header("Authorization", "Bearer " + buyerToken)
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .param("amount", "1"))
+                    .andExpect(status().isNotFound())
+                    .andExpect(jsonPath("$.message").value("Buy and deposit through a machine under /api/v1/machines/{machineId}"));
+        } finally {
+            ReflectionTestUtils.setField(productController, "unscopedEndpoints", true);
+        }
+        assertEquals(9, productRepository.findById(100L).get().getAmountAvailable());
+    }
+
     @Test
     public void buyProductTest_withBuyerTokenAndWithNotEnoughBalance() throws Exception {
 
@@ -541,6 +754,22 @@ public class ProductControllerTest {
         assertEquals(10, productRepository.findByProductName("testProduct1").get().getAmountAvailable());
     }
 
+    @Test
+    public void buyProductTest_withBuyerTokenAndNotEnoughBalance_returnsErrorResponse() throws Exception {
+        User buyer = userRepository.findByUsername("testBuyer").get();
+        buyer.setDeposit(10);
+        userRepository.save(buyer);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/products/100/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", "2"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Not sufficient funds. Please deposit more money"));
+    }
+
     @Test
     public void buyProductTest_withBuyerTokenAndAmountGreaterThanTheAvailableAmount() throws Exception {
 
@@ -554,7 +783,9 @@ public class ProductControllerTest {
                         .header("Authorization", "Bearer " + buyerToken)
                         .contentType(MediaType.APPLICATION_FORM_URLENCODED)
                         .param("amount", "20"))
-                .andExpect(status().isBadRequest());
+                .andExpect(status().isBadRequest())
+                // the balance doesn't cover 20 items either, the missing stock is reported first
+                .andExpect(jsonPath("$.message").value("There are not enough products available"));
 
         assertTrue(productRepository.findByProductName("testProduct1").isPresent());
         assertEquals(10, productRepository.findByProductName("testProduct1").get().getAmountAvailable());
@@ -606,6 +837,58 @@ public class ProductControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void streamStockTest_sendsTheChangesOfTheSubscribedSeller() throws Exception {
+        MvcResult everyProduct = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult otherSeller = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/stream?sellerId=-1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // two purchases within one interval are sent as one delta with the latest stock
+        Long sellerId = productRepository.findSellerIdById(100L).orElseThrow();
+        for (int amountAvailable : new int[]{5, 2}) {
+            stockStreamService.onProductChanged(ProductChangedEvent.builder()
+                    .productId(100L)
+                    .sellerId(sellerId)
+                    .amountAvailable(amountAvailable)
+                    .type(ProductChangedEvent.ChangeType.PURCHASED)
+                    .build());
+        }
+        stockStreamService.flush();
+
+        // the events are sent on the stream sender threads
+        long deadline = System.currentTimeMillis() + 5000;
+        // an event is complete once its blank line arrived, the name and the data may be written apart
+        while (!everyProduct.getResponse().getContentAsString().contains("\n\n") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        String events = everyProduct.getResponse().getContentAsString();
+        assertTrue(events.startsWith("event:stock\ndata:["), events);
+        assertTrue(events.contains("\"productId\":100"), events);
+        assertTrue(events.contains("\"amountAvailable\":2"), events);
+        assertTrue(events.contains("\"lowStock\":true"), events);
+        assertFalse(events.contains("\"amountAvailable\":5"), events);
+        assertEquals("", otherSeller.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void getMySalesTest_withSellerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/my-products/sales?granularity=DAY")
+                        .header("Authorization", "Bearer " + sellerToken))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(jsonPath("$.content.length()").value(0));
+    }
+
+    @Test
+    public void getMySalesTest_withBuyerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/my-products/sales")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isForbidden());
+    }
+
     @AfterEach
     public void tearDown() {
         jdbc.execute("DELETE FROM products WHERE product_name = 'testProduct1'");
@@ -0,0 +1,118 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.security.JWTUtils;
+import com.flapkap.challenge.security.RateLimitFilter;
+import com.flapkap.challenge.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private RateLimitFilter filter;
+    private JWTUtils jwtUtils;
+
+    @BeforeEach
+    public void setupFilter() {
+        jwtUtils = new JWTUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", "60000");
+
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "enabled", true);
+        // a bucket of two purchases refilled once a minute
+        ReflectionTestUtils.setField(filter, "purchaseRatePerSecond", 1.0 / 60);
+        ReflectionTestUtils.setField(filter, "purchaseBurst", 2);
+        ReflectionTestUtils.setField(filter, "maxClients", 100);
+        ReflectionTestUtils.setField(filter, "purchaseConcurrency", 1);
+        ReflectionTestUtils.setField(filter, "loginConcurrency", 1);
+        ReflectionTestUtils.setField(filter, "readConcurrency", 1);
+        ReflectionTestUtils.setField(filter, "writeConcurrency", 1);
+        filter.init();
+    }
+
+    private MockHttpServletRequest purchase(String address, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/products/100/buy");
+        request.setServletPath("/api/v1/products/100/buy");
+        request.setRemoteAddr(address);
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        return request;
+    }
+
+    private MockHttpServletResponse perform(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+
+    private String token(String username) {
+        UserPrincipal principal = new UserPrincipal(User.builder().username(username).build(), List.of());
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(principal, null, List.of()));
+    }
+
+    @Test
+    public void purchaseTest_overTheRate_returnsTooManyRequestsWithRetryAfter() throws Exception {
+        assertEquals(200, perform(purchase("10.0.0.1", null)).getStatus());
+        assertEquals(200, perform(purchase("10.0.0.1", null)).getStatus());
+
+        MockHttpServletResponse response = perform(purchase("10.0.0.1", null));
+        assertEquals(429, response.getStatus());
+        assertTrue(Long.parseLong(response.getHeader("Retry-After")) > 0);
+        assertEquals("application/json", response.getContentType());
+    }
+
+    @Test
+    public void purchaseTest_eachClientHasItsOwnBucket() throws Exception {
+        String token = token("testBuyer");
+        perform(purchase("10.0.0.1", token));
+        perform(purchase("10.0.0.1", token));
+        assertEquals(429, perform(purchase("10.0.0.1", token)).getStatus());
+
+        // another user behind the same address and another address still have their purchases
+        assertEquals(200, perform(purchase("10.0.0.1", token("otherBuyer"))).getStatus());
+        assertEquals(200, perform(purchase("10.0.0.2", null)).getStatus());
+    }
+
+    @Test
+    public void purchaseTest_withMadeUpTokens_sharesTheBucketOfTheAddress() throws Exception {
+        assertEquals(200, perform(purchase("10.0.0.1", "madeUp1")).getStatus());
+        assertEquals(200, perform(purchase("10.0.0.1", "madeUp2")).getStatus());
+        assertEquals(429, perform(purchase("10.0.0.1", "madeUp3")).getStatus());
+    }
+
+    @Test
+    public void readTest_overTheConcurrencyLimit_returnsTooManyRequests() throws Exception {
+        MockHttpServletRequest first = new MockHttpServletRequest("GET", "/api/v1/products/");
+        first.setServletPath("/api/v1/products/");
+        MockHttpServletRequest second = new MockHttpServletRequest("GET", "/api/v1/products/1");
+        second.setServletPath("/api/v1/products/1");
+        MockHttpServletResponse secondResponse = new MockHttpServletResponse();
+
+        // the second read arrives while the first one still holds the only permit
+        FilterChain slowChain = (request, response) -> filter.doFilter(second, secondResponse, new MockFilterChain());
+        MockHttpServletResponse firstResponse = new MockHttpServletResponse();
+        filter.doFilter(first, firstResponse, slowChain);
+
+        assertEquals(200, firstResponse.getStatus());
+        assertEquals(429, secondResponse.getStatus());
+        assertEquals("1", secondResponse.getHeader("Retry-After"));
+
+        // the permit is released once the first read is done
+        MockHttpServletRequest third = new MockHttpServletRequest("GET", "/api/v1/products/1");
+        third.setServletPath("/api/v1/products/1");
+        assertEquals(200, perform(third).getStatus());
+    }
+}
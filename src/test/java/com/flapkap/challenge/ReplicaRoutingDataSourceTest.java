@@ -0,0 +1,120 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.config.DataSourceRoute;
+import com.flapkap.challenge.config.ReadYourWritesTracker;
+import com.flapkap.challenge.config.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two separate databases stand in for the primary and the replica, each one answers with its own name.
+ * */
+public class ReplicaRoutingDataSourceTest {
+
+    private ReadYourWritesTracker tracker;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate setup = new JdbcTemplate(dataSource);
+        setup.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(16))");
+        setup.execute("DELETE FROM node");
+        setup.update("INSERT INTO node (name) VALUES (?)", name);
+        return dataSource;
+    }
+
+    @BeforeEach
+    public void setupRouting() {
+        DataSource primary = database("primary");
+        tracker = new ReadYourWritesTracker(60000);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(tracker);
+        routing.setTargetDataSources(Map.of(DataSourceRoute.PRIMARY, primary, DataSourceRoute.REPLICA, database("replica")));
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        login("buyer");
+    }
+
+    private static void login(String username) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                username, null, List.of(new SimpleGrantedAuthority("ROLE_BUYER"))));
+    }
+
+    private String node() {
+        return jdbc.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    @Test
+    public void determineCurrentLookupKeyTest_sendsTheReadOnlyTransactionsToTheReplica() {
+        assertEquals("replica", readOnly.execute(status -> node()));
+        assertEquals("primary", readWrite.execute(status -> node()));
+    }
+
+    @Test
+    public void determineCurrentLookupKeyTest_keepsAWriterOnThePrimary() {
+        readWrite.execute(status -> node());
+        assertEquals("primary", readOnly.execute(status -> node()));
+
+        // the other users still read from the replica
+        login("otherBuyer");
+        assertEquals("replica", readOnly.execute(status -> node()));
+    }
+
+    @Test
+    public void determineCurrentLookupKeyTest_onlyMarksTheCommittedTransactions() {
+        // outside of a transaction, on the primary without marking a write
+        assertEquals("primary", node());
+        assertEquals("replica", readOnly.execute(status -> node()));
+
+        // a rolled back transaction wrote nothing
+        readWrite.executeWithoutResult(status -> {
+            node();
+            status.setRollbackOnly();
+        });
+        assertEquals("replica", readOnly.execute(status -> node()));
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void expireWritesTest_forgetsTheWritesOutsideOfTheWindow() throws InterruptedException {
+        tracker = new ReadYourWritesTracker(1);
+        login("buyer");
+        tracker.markWrite();
+        login("otherBuyer");
+        tracker.markWrite();
+        assertEquals(2, tracker.size());
+
+        Thread.sleep(5);
+        tracker.expireWrites();
+        assertEquals(0, tracker.size());
+    }
+
+    @AfterEach
+    public void logout() {
+        SecurityContextHolder.clearContext();
+    }
+}
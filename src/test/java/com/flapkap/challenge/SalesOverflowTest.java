@@ -0,0 +1,52 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.services.sales.SalesOverflow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SalesOverflowTest {
+
+    @Test
+    public void rejectedExecutionTest_recordsTheSaleAfterTheLockIsReleased() {
+        SalesOverflow overflow = new SalesOverflow();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1));
+        List<String> steps = new ArrayList<>();
+
+        String result = overflow.deferring(() -> {
+            steps.add("locked");
+            overflow.rejectedExecution(() -> steps.add("sale"), executor);
+            steps.add("unlocked");
+            return "purchase";
+        });
+
+        assertEquals("purchase", result);
+        assertEquals(List.of("locked", "unlocked", "sale"), steps);
+        executor.shutdown();
+    }
+
+    @Test
+    public void rejectedExecutionTest_recordsTheSaleOfAFailedAttempt() {
+        SalesOverflow overflow = new SalesOverflow();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(1));
+        List<String> steps = new ArrayList<>();
+
+        // the first purchase committed, the sale is kept when the call fails afterwards
+        assertThrows(IllegalStateException.class, () -> overflow.deferring(() -> {
+            overflow.rejectedExecution(() -> steps.add("sale"), executor);
+            throw new IllegalStateException();
+        }));
+        assertEquals(List.of("sale"), steps);
+
+        // outside of a purchase the sale is recorded right away
+        overflow.rejectedExecution(() -> steps.add("direct"), executor);
+        assertEquals(List.of("sale", "direct"), steps);
+        executor.shutdown();
+    }
+}
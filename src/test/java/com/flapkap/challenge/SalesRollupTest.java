@@ -0,0 +1,140 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.entities.SalesRollup;
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.RollupGranularity;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.repositories.SalesRollupRepository;
+import com.flapkap.challenge.repositories.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The sales are recorded after the purchase commits, so unlike the controller tests these purchases
+ * are committed and the rows are removed after each test.
+ * */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class SalesRollupTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private SalesRollupRepository salesRollupRepository;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    private Long sellerId;
+    private String sellerToken;
+    private String buyerToken;
+
+    @BeforeEach
+    public void setupDatabase() throws Exception {
+        User seller = new User();
+        seller.setUsername("rollupSeller");
+        seller.setPassword(passwordEncoder.encode("testpassword"));
+        seller.setRole(UserRole.ROLE_SELLER);
+        sellerId = userRepository.save(seller).getId();
+
+        User buyer = new User();
+        buyer.setUsername("rollupBuyer");
+        buyer.setPassword(passwordEncoder.encode("testpassword"));
+        buyer.setRole(UserRole.ROLE_BUYER);
+        buyer.setDeposit(500);
+        userRepository.save(buyer);
+
+        jdbc.execute("INSERT INTO products (id, product_name, cost, amount_available, seller_id) VALUES (900, 'rollupProduct', 50, 10, " + sellerId + ")");
+
+        sellerToken = login("rollupSeller");
+        buyerToken = login("rollupBuyer");
+    }
+
+    @Test
+    public void buyProductTest_addsTheSaleToTheRollups() throws Exception {
+        buy(2);
+        buy(1);
+
+        awaitDayRollup(3);
+        // the two purchases may fall in different minutes or hours, every granularity still adds up to both
+        List<SalesRollup> rollups = salesRollupRepository.findAll();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            assertEquals(3, rollups.stream()
+                    .filter(rollup -> rollup.getSellerId().equals(sellerId) && rollup.getGranularity() == granularity)
+                    .mapToLong(SalesRollup::getQuantity).sum());
+            assertEquals(150, rollups.stream()
+                    .filter(rollup -> rollup.getSellerId().equals(sellerId) && rollup.getGranularity() == granularity)
+                    .mapToLong(SalesRollup::getRevenue).sum());
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/products/my-products/sales?granularity=DAY")
+                        .header("Authorization", "Bearer " + sellerToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].productId").value(900))
+                .andExpect(jsonPath("$.content[0].quantity").value(3))
+                .andExpect(jsonPath("$.content[0].revenue").value(150));
+    }
+
+    private void buy(int amount) throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/products/900/buy")
+                        .header("Authorization", "Bearer " + buyerToken)
+                        .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                        .param("amount", String.valueOf(amount)))
+                .andExpect(status().isOk());
+    }
+
+    private void awaitDayRollup(long quantity) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Optional<SalesRollup> rollup = salesRollupRepository.findAll().stream()
+                    .filter(candidate -> candidate.getSellerId().equals(sellerId))
+                    .filter(candidate -> candidate.getGranularity() == RollupGranularity.DAY)
+                    .findFirst();
+            if (rollup.isPresent() && rollup.get().getQuantity() == quantity) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("The day rollup did not reach a quantity of " + quantity);
+    }
+
+    private String login(String username) throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType("application/json")
+                        .content("{\"username\":\"" + username + "\",\"password\":\"testpassword\"}"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        // parse the response and get the token
+        return response.substring(response.indexOf("token") + 8, response.indexOf("type") - 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbc.update("DELETE FROM sales_rollups WHERE seller_id = ?", sellerId);
+        jdbc.update("DELETE FROM sales WHERE seller_id = ?", sellerId);
+        jdbc.execute("DELETE FROM products WHERE id = 900");
+
+        jdbc.execute("DELETE FROM users WHERE username = 'rollupSeller'");
+        jdbc.execute("DELETE FROM users WHERE username = 'rollupBuyer'");
+    }
+}
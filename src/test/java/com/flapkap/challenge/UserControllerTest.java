@@ -1,5 +1,8 @@
 package com.flapkap.challenge;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.controllers.UserController;
 import com.flapkap.challenge.entities.User;
 import com.flapkap.challenge.entities.enums.UserRole;
 import com.flapkap.challenge.repositories.UserRepository;
@@ -12,13 +15,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -36,6 +48,10 @@ public class UserControllerTest {
     private MockMvc mockMvc;
     @Autowired
     private PasswordEncoder passwordEncoder;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private UserController userController;
 
     private String adminToken;
     private String sellerToken;
@@ -680,6 +696,24 @@ public class UserControllerTest {
         assertEquals(50, userRepository.findByUsername("testBuyer").get().getDeposit());
     }
 
+    @Test
+    public void depositMoneyTest_withBuyerTokenAndTheUnscopedEndpointsOff() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/users/deposit/50")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Deprecation", "true"));
+
+        ReflectionTestUtils.setField(userController, "unscopedEndpoints", false);
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/users/deposit/50")
+                            .header("Authorization", "Bearer " + buyerToken))
+                    .andExpect(status().isNotFound());
+        } finally {
+            ReflectionTestUtils.setField(userController, "unscopedEndpoints", true);
+        }
+        assertEquals(50, userRepository.findByUsername("testBuyer").get().getDeposit());
+    }
+
     @Test
     public void depositMoneyTest_withInValidAmountAndBuyerToken() throws Exception {
         mockMvc.perform(MockMvcRequestBuilders.put("/api/v1/users/deposit/15")
@@ -736,10 +770,93 @@ public class UserControllerTest {
                 .andExpect(jsonPath("$.message").value("Full authentication is required to access this resource"));
     }
 
+    @Test
+    public void getAllUsersTest_withAcceptEncodingAndAPageOverTheLimit() throws Exception {
+        for (int i = 0; i < 30; i++) {
+            jdbc.execute("INSERT INTO users (username, password, role, deposit) VALUES ('pageUser" + i + "', 'password', 'ROLE_BUYER', 0)");
+        }
+
+        MockHttpServletResponse response = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/users/?size=500")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().stringValues("Vary", hasItem("Accept-Encoding")))
+                .andReturn().getResponse();
+
+        JsonNode page = objectMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertEquals(200, page.path("size").asInt());
+        assertEquals(34, page.path("content").size());
+
+        // a page under the minimum size is sent as is
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/users/?size=1")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.content.length()").value(1));
+    }
+
+    /**
+     * The export is streamed on another thread, it only sees committed users
+     */
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportUsersTest_withAdminToken() throws Exception {
+        MvcResult export = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/users/export")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/json"))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].username").value("admin"))
+                .andExpect(jsonPath("$[1].username").value("testAdmin"))
+                .andExpect(jsonPath("$[1].role").value("ROLE_ADMIN"))
+                .andExpect(jsonPath("$[2].username").value("testSeller"))
+                .andExpect(jsonPath("$[3].username").value("testBuyer"))
+                .andExpect(jsonPath("$[3].password").doesNotExist());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void exportUsersTest_withAcceptEncoding() throws Exception {
+        // enough users to go over the minimum size of the export
+        for (int i = 0; i < 150; i++) {
+            jdbc.execute("INSERT INTO users (username, password, role, deposit) VALUES ('exportUser" + i + "', 'password', 'ROLE_BUYER', 0)");
+        }
+
+        MvcResult export = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/users/export")
+                        .header("Authorization", "Bearer " + adminToken)
+                        .header("Accept-Encoding", "gzip"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MockHttpServletResponse response = mockMvc.perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse();
+
+        JsonNode users = objectMapper.readTree(new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray())));
+        assertEquals(154, users.size());
+        assertEquals("exportUser149", users.get(153).path("username").asText());
+    }
+
+    @Test
+    public void exportUsersTest_withBuyerToken() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/users/export")
+                        .header("Authorization", "Bearer " + buyerToken))
+                .andExpect(status().isForbidden());
+    }
+
     @AfterEach
     public void tearDown() {
         jdbc.execute("DELETE FROM users WHERE username = 'testAdmin'");
         jdbc.execute("DELETE FROM users WHERE username = 'testSeller'");
         jdbc.execute("DELETE FROM users WHERE username = 'testBuyer'");
+        jdbc.execute("DELETE FROM users WHERE username LIKE 'exportUser%'");
     }
 }
@@ -0,0 +1,135 @@
+package com.flapkap.challenge;
+
+import com.flapkap.challenge.entities.User;
+import com.flapkap.challenge.entities.enums.UserRole;
+import com.flapkap.challenge.repositories.UserRepository;
+import com.flapkap.challenge.services.user.CachedUser;
+import com.flapkap.challenge.services.user.SharedUserCache;
+import com.flapkap.challenge.services.user.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The cache is bypassed inside a transaction, so unlike the controller tests the changes are committed
+ * and the rows are removed after each test. The shared tier is kept in memory.
+ * */
+@SpringBootTest
+@Import(UserDetailsCacheTest.InMemorySharedCacheConfig.class)
+public class UserDetailsCacheTest {
+
+    @TestConfiguration
+    static class InMemorySharedCacheConfig {
+        @Bean
+        public InMemorySharedUserCache sharedUserCache() {
+            return new InMemorySharedUserCache();
+        }
+    }
+
+    static class InMemorySharedUserCache implements SharedUserCache {
+        private final Map<String, CachedUser> entries = new ConcurrentHashMap<>();
+
+        @Override
+        public Optional<CachedUser> get(String username) {
+            return Optional.ofNullable(entries.get(username));
+        }
+
+        @Override
+        public void put(CachedUser user) {
+            entries.put(user.getUsername(), user);
+        }
+
+        @Override
+        public void invalidate(String username) {
+            entries.remove(username);
+        }
+
+        @Override
+        public void onInvalidation(Consumer<String> listener) {
+        }
+    }
+
+    @Autowired
+    private JdbcTemplate jdbc;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserDetailsService userDetailsService;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+    @Autowired
+    private InMemorySharedUserCache sharedUserCache;
+
+    private Long userId;
+
+    @BeforeEach
+    public void setupUser() {
+        User user = new User();
+        user.setUsername("cachedUser");
+        user.setPassword(passwordEncoder.encode("testpassword"));
+        user.setRole(UserRole.ROLE_BUYER);
+        userId = userRepository.save(user).getId();
+
+        // fill both tiers
+        userDetailsService.loadUserByUsername("cachedUser");
+        assertTrue(sharedUserCache.get("cachedUser").isPresent());
+    }
+
+    private User changes(String username, String password, UserRole role) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword(password);
+        user.setRole(role);
+        return user;
+    }
+
+    @Test
+    public void loadUserByUsernameTest_afterAPasswordChange() {
+        userService.updateUser(userId, changes("cachedUser", "newpassword", null));
+
+        assertTrue(sharedUserCache.get("cachedUser").isEmpty());
+        String password = userDetailsService.loadUserByUsername("cachedUser").getPassword();
+        assertTrue(passwordEncoder.matches("newpassword", password));
+    }
+
+    @Test
+    public void loadUserByUsernameTest_afterAnUpdate() {
+        userService.updateUser(userId, changes("renamedUser", null, UserRole.ROLE_SELLER));
+
+        assertTrue(sharedUserCache.get("cachedUser").isEmpty());
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("cachedUser"));
+        assertEquals("ROLE_SELLER", userDetailsService.loadUserByUsername("renamedUser")
+                .getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    public void loadUserByUsernameTest_afterADelete() {
+        userService.deleteUser(userId);
+
+        assertTrue(sharedUserCache.get("cachedUser").isEmpty());
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsService.loadUserByUsername("cachedUser"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbc.execute("DELETE FROM users WHERE id = " + userId);
+    }
+}
@@ -0,0 +1,30 @@
+package com.flapkap.challenge;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The warm-up commits its purchases like a kiosk would, nothing of it may be left once the application is started.
+ * */
+@SpringBootTest(properties = {"warmup.enabled=true", "warmup.iterations=30", "warmup.logins=1"})
+public class WarmupRunnerTest {
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private int count(String sql) {
+        return jdbc.queryForObject(sql, Integer.class);
+    }
+
+    @Test
+    public void runTest_removesTheWarmupData() {
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE username LIKE 'wus%' OR username LIKE 'wub%'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM products WHERE product_name LIKE 'warmup-%'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM sales s WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = s.seller_id)"));
+        assertEquals(0, count("SELECT COUNT(*) FROM sales_rollups r WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = r.seller_id)"));
+    }
+}
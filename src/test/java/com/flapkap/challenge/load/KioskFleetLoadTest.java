@@ -0,0 +1,221 @@
+package com.flapkap.challenge.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flapkap.challenge.ChallengeApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives a fleet of simulated kiosks against the application and reports throughput and latency percentiles.
+ * Every kiosk logs in a buyer, then loops over browse, deposit, buy and reset with think times in between,
+ * while a seller restocks the catalog in the background. Product popularity follows a Zipf distribution.
+ *
+ * Run with: mvn test -Pload-test -Dload.kiosks=50 -Dload.durationSeconds=60 -Dload.hotSkew=1.2
+ * Set -Dload.baseUrl=http://host:port to target an already running application, the embedded one is then not started.
+ * Responses shed by the admission control (429) or the load shedding (503) are reported apart from the server errors.
+ */
+@Tag("load")
+@Slf4j
+public class KioskFleetLoadTest {
+    private static final int[] COINS = {5, 10, 20, 50, 100};
+    private static final int[] PRICES = {5, 10, 20, 50, 100};
+    private static final int MAX_STOCK = 20;
+
+    private final int kiosks = Integer.getInteger("load.kiosks", 20);
+    private final int durationSeconds = Integer.getInteger("load.durationSeconds", 30);
+    private final int products = Integer.getInteger("load.products", 20);
+    private final double hotSkew = Double.parseDouble(System.getProperty("load.hotSkew", "1.1"));
+    private final int thinkTimeMs = Integer.getInteger("load.thinkTimeMs", 200);
+    private final String runId = Long.toString(System.currentTimeMillis() % 100_000, 36);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    private ConfigurableApplicationContext application;
+    private String baseUrl;
+
+    @BeforeEach
+    public void startApplication() {
+        baseUrl = System.getProperty("load.baseUrl");
+        if (baseUrl == null) {
+            // nothing to target, run the application on a random port in this JVM
+            application = new SpringApplicationBuilder(ChallengeApplication.class).run("--server.port=0");
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+        }
+    }
+
+    @AfterEach
+    public void stopApplication() {
+        if (application != null) {
+            application.close();
+        }
+    }
+
+    @Test
+    public void kioskFleet() throws Exception {
+
+        // a seller with the catalog
+        String sellerToken = signUp("seller" + runId, "ROLE_SELLER");
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < products; i++) {
+            String body = String.format("{\"productName\":\"load-%s-%d\",\"cost\":%d,\"amountAvailable\":%d}",
+                    runId, i, PRICES[i % PRICES.length], MAX_STOCK);
+            HttpResponse<String> response = send(post("/api/v1/products/", sellerToken, body));
+            assertEquals(201, response.statusCode(), response.body());
+            productIds.add(mapper.readTree(response.body()).path("data").path("id").asLong());
+        }
+
+        // one buyer per kiosk
+        List<String> buyerTokens = new ArrayList<>();
+        for (int i = 0; i < kiosks; i++) {
+            buyerTokens.add(signUp("kiosk" + runId + "-" + i, "ROLE_BUYER"));
+        }
+
+        ZipfSampler sampler = new ZipfSampler(products, hotSkew);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService executor = Executors.newFixedThreadPool(kiosks + 1);
+        List<Future<LatencyRecorder>> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (String buyerToken : buyerTokens) {
+            results.add(executor.submit(() -> runKiosk(buyerToken, productIds, sampler, deadline)));
+        }
+        results.add(executor.submit(() -> runRestocker(sellerToken, productIds, deadline)));
+
+        LatencyRecorder total = new LatencyRecorder();
+        for (Future<LatencyRecorder> result : results) {
+            total.merge(result.get());
+        }
+        executor.shutdown();
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+        log.info("Kiosk fleet load test: {} kiosks, {} products, skew {}, think time {} ms{}{}",
+                kiosks, products, hotSkew, thinkTimeMs, System.lineSeparator(), total.report(elapsedSeconds));
+
+        assertTrue(total.total() > total.shed(), "every request was shed");
+        assertEquals(0, total.serverErrors(), "server errors other than the shed 503");
+    }
+
+    private LatencyRecorder runKiosk(String token, List<Long> productIds, ZipfSampler sampler, long deadline)
+            throws IOException, InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        while (System.nanoTime() < deadline) {
+            timed(recorder, "browse", get("/api/v1/products/?page=0&size=10"));
+            think();
+
+            // insert a few coins, then buy one of the products
+            int coins = 1 + random.nextInt(3);
+            for (int i = 0; i < coins; i++) {
+                timed(recorder, "deposit", put("/api/v1/users/deposit/" + COINS[random.nextInt(COINS.length)], token));
+            }
+            think();
+
+            Long productId = productIds.get(sampler.next());
+            timed(recorder, "buy", post("/api/v1/products/" + productId + "/buy?amount=1", token, ""));
+            think();
+
+            // most customers walk away with their change
+            if (random.nextInt(4) != 0) {
+                timed(recorder, "reset", put("/api/v1/users/reset", token));
+                think();
+            }
+        }
+        return recorder;
+    }
+
+    private LatencyRecorder runRestocker(String token, List<Long> productIds, long deadline)
+            throws IOException, InterruptedException {
+        LatencyRecorder recorder = new LatencyRecorder();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < productIds.size(); i++) {
+                String body = String.format("{\"productName\":\"load-%s-%d\",\"cost\":%d,\"amountAvailable\":%d}",
+                        runId, i, PRICES[i % PRICES.length], MAX_STOCK);
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/products/" + productIds.get(i)))
+                        .header("Authorization", "Bearer " + token)
+                        .header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+                timed(recorder, "restock", request);
+            }
+            Thread.sleep(1000);
+        }
+        return recorder;
+    }
+
+    private String signUp(String username, String role) throws IOException, InterruptedException {
+        String credentials = String.format("{\"username\":\"%s\",\"password\":\"password\"}", username);
+        String user = String.format("{\"username\":\"%s\",\"password\":\"password\",\"role\":\"%s\"}", username, role);
+
+        assertEquals(201, send(post("/api/v1/users/", null, user)).statusCode());
+        HttpResponse<String> login = send(post("/api/auth/login", null, credentials));
+        assertEquals(200, login.statusCode(), login.body());
+
+        JsonNode body = mapper.readTree(login.body());
+        return body.path("token").asText();
+    }
+
+    private void timed(LatencyRecorder recorder, String operation, HttpRequest request)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        HttpResponse<String> response = send(request);
+        recorder.record(operation, System.nanoTime() - start, response.statusCode());
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkTimeMs > 0) {
+            // exponential think times keep the kiosks from marching in lockstep
+            double sample = -Math.log(1 - ThreadLocalRandom.current().nextDouble());
+            Thread.sleep((long) Math.min(sample * thinkTimeMs, thinkTimeMs * 5L));
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private HttpRequest put(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private HttpRequest post(String path, String token, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+}
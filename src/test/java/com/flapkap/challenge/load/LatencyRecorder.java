@@ -0,0 +1,105 @@
+package com.flapkap.challenge.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Collects the latencies and outcomes of the operations of a single kiosk.
+ * Every kiosk owns its recorder, the recorders are merged once the run is over.
+ */
+public class LatencyRecorder {
+    private final Map<String, long[]> latencies = new TreeMap<>();
+    private final Map<String, Integer> counts = new TreeMap<>();
+    private final Map<String, Integer> outcomes = new TreeMap<>();
+
+    public void record(String operation, long latencyNanos, int status) {
+        addSample(operation, latencyNanos);
+        outcomes.merge(operation + " " + status, 1, Integer::sum);
+    }
+
+    public void merge(LatencyRecorder other) {
+        other.counts.forEach((operation, count) -> {
+            long[] samples = other.latencies.get(operation);
+            for (int i = 0; i < count; i++) {
+                addSample(operation, samples[i]);
+            }
+        });
+        other.outcomes.forEach((key, count) -> outcomes.merge(key, count, Integer::sum));
+    }
+
+    private void addSample(String operation, long latencyNanos) {
+        int count = counts.getOrDefault(operation, 0);
+        long[] samples = latencies.computeIfAbsent(operation, key -> new long[64]);
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+            latencies.put(operation, samples);
+        }
+        samples[count] = latencyNanos;
+        counts.put(operation, count + 1);
+    }
+
+    public int total() {
+        return counts.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    public int outcomes(String operation, int status) {
+        return outcomes.getOrDefault(operation + " " + status, 0);
+    }
+
+    /**
+     * @return the requests refused by the admission control or the load shedding, a server under
+     * pressure is expected to answer some of them, they are not failures
+     */
+    public int shed() {
+        return countStatuses(status -> status == 429 || status == 503);
+    }
+
+    /**
+     * @return the requests that failed on the server, without the shed ones
+     */
+    public int serverErrors() {
+        return countStatuses(status -> status >= 500 && status != 503);
+    }
+
+    private int countStatuses(IntPredicate statuses) {
+        return outcomes.entrySet().stream()
+                .filter(entry -> statuses.test(Integer.parseInt(entry.getKey().substring(entry.getKey().lastIndexOf(' ') + 1))))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+
+    /**
+     * Render the throughput and latency percentiles of every operation
+     *
+     * @param elapsedSeconds the duration of the run
+     * @return the report table
+     */
+    public String report(double elapsedSeconds) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-10s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        counts.forEach((operation, count) -> {
+            long[] samples = Arrays.copyOf(latencies.get(operation), count);
+            Arrays.sort(samples);
+            report.append(String.format("%-10s %8d %10.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation, count, count / elapsedSeconds,
+                    millis(percentile(samples, 0.50)), millis(percentile(samples, 0.90)),
+                    millis(percentile(samples, 0.99)), millis(samples[samples.length - 1])));
+        });
+        report.append(String.format("total %d requests, %.1f req/s, %d shed, %d server errors%n",
+                total(), total() / elapsedSeconds, shed(), serverErrors()));
+        report.append("status codes: ").append(outcomes).append(System.lineSeparator());
+        return report.toString();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,96 @@
+package com.flapkap.challenge.load;
+
+import com.flapkap.challenge.ChallengeApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the application several times with the default settings and with the fast-start profile,
+ * reports the median startup time of both and checks the fast-start median against the target.
+ * Every run is a fresh JVM and the profiles alternate, so neither profile inherits the classes loaded
+ * or the code compiled by the other. The time is the JVM uptime reported by the startup timing report.
+ *
+ * Run with: mvn test -Pload-test -Dtest=StartupBenchmarkTest -Dstartup.runs=5 -Dstartup.targetMs=3000
+ */
+@Tag("load")
+@Slf4j
+public class StartupBenchmarkTest {
+    private static final Pattern STARTED = Pattern.compile("Started in (\\d+) ms since the JVM launch");
+
+    private final int runs = Integer.getInteger("startup.runs", 3);
+    private final long targetMs = Long.getLong("startup.targetMs", 3000);
+    private final long runTimeoutSeconds = Long.getLong("startup.runTimeoutSeconds", 120);
+
+    @Test
+    public void startupTime() throws Exception {
+        long[] defaultTimes = new long[runs];
+        long[] fastStartTimes = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            // alternate which profile goes first, the file system cache favours the second run
+            if (i % 2 == 0) {
+                defaultTimes[i] = startup("default", i);
+                fastStartTimes[i] = startup("fast-start", i);
+            } else {
+                fastStartTimes[i] = startup("fast-start", i);
+                defaultTimes[i] = startup("default", i);
+            }
+        }
+
+        long defaultMedian = median(defaultTimes);
+        long fastStartMedian = median(fastStartTimes);
+        log.info("Startup median: default {} ms, fast-start {} ms, target {} ms", defaultMedian, fastStartMedian, targetMs);
+        assertTrue(fastStartMedian <= targetMs,
+                "fast-start median of " + fastStartMedian + " ms is over the target of " + targetMs + " ms");
+    }
+
+    private long startup(String profile, int run) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = List.of(java,
+                "-cp", System.getProperty("java.class.path"),
+                ChallengeApplication.class.getName(),
+                "--spring.profiles.active=" + profile,
+                "--server.port=0",
+                // every run gets its own database, the admin is created on each of them
+                "--spring.datasource.url=jdbc:h2:mem:startup-" + profile + "-" + run);
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(runTimeoutSeconds);
+            String line;
+            while (System.nanoTime() < deadline && (line = output.readLine()) != null) {
+                Matcher matcher = STARTED.matcher(line);
+                if (matcher.find()) {
+                    long startupMs = Long.parseLong(matcher.group(1));
+                    log.info("Startup {} run {}: {} ms", profile, run + 1, startupMs);
+                    return startupMs;
+                }
+            }
+            return fail("The " + profile + " run " + (run + 1) + " did not report its startup time");
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,29 @@
+package com.flapkap.challenge.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks an index in [0, size) following a Zipf distribution, so a few hot products get most of the purchases.
+ * An exponent of 0 gives a uniform distribution.
+ */
+public class ZipfSampler {
+    private final double[] cumulative;
+
+    public ZipfSampler(int size, double exponent) {
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public int next() {
+        int index = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
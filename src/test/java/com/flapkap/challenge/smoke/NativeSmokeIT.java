@@ -0,0 +1,161 @@
+package com.flapkap.challenge.smoke;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Starts the native executable and runs the purchase flow against it: sign up a seller and a buyer,
+ * create a product, deposit coins, buy and reset. Logs the startup time and the resident memory of the process.
+ *
+ * Run with: mvn -Pnative verify (the executable is built in the package phase)
+ * Set -Dnative.startupTargetMs to change the startup target, 1000 ms by default.
+ */
+@Slf4j
+public class NativeSmokeIT {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final HttpClient CLIENT = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    private static Process process;
+    private static String baseUrl;
+    private static long startupMs;
+
+    @BeforeAll
+    public static void start() throws Exception {
+        Path binary = Path.of(System.getProperty("native.binary", "target/challenge"));
+        assertTrue(Files.isExecutable(binary), "Native executable not found: " + binary);
+
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        baseUrl = "http://localhost:" + port;
+
+        long start = System.nanoTime();
+        process = new ProcessBuilder(List.of(binary.toString(), "--server.port=" + port))
+                .redirectErrorStream(true)
+                .redirectOutput(Path.of("target", "native-smoke.log").toFile())
+                .start();
+
+        // ready once the catalog answers
+        long deadline = start + TimeUnit.SECONDS.toNanos(30);
+        while (true) {
+            try {
+                if (send(get("/api/v1/products/")).statusCode() == 200) {
+                    break;
+                }
+            } catch (IOException e) {
+                assertTrue(process.isAlive(), "Native executable exited, see target/native-smoke.log");
+                assertTrue(System.nanoTime() < deadline, "Native executable didn't start in 30 seconds");
+                Thread.sleep(10);
+            }
+        }
+        startupMs = (System.nanoTime() - start) / 1_000_000;
+        log.info("Native executable ready in {} ms", startupMs);
+    }
+
+    @AfterAll
+    public static void stop() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            process.waitFor(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void startupTime() {
+        long targetMs = Long.getLong("native.startupTargetMs", 1000);
+        assertTrue(startupMs <= targetMs, "Startup took " + startupMs + " ms, over the target of " + targetMs + " ms");
+    }
+
+    @Test
+    public void purchaseFlow() throws Exception {
+        String sellerToken = signUp("nativeSeller", "ROLE_SELLER");
+        String buyerToken = signUp("nativeBuyer", "ROLE_BUYER");
+
+        HttpResponse<String> product = send(post("/api/v1/products/", sellerToken,
+                "{\"productName\":\"nativeProduct\",\"cost\":50,\"amountAvailable\":10}"));
+        assertEquals(201, product.statusCode(), product.body());
+        long productId = MAPPER.readTree(product.body()).path("data").path("id").asLong();
+
+        assertEquals(200, send(put("/api/v1/users/deposit/100", buyerToken)).statusCode());
+        assertEquals(200, send(put("/api/v1/users/deposit/20", buyerToken)).statusCode());
+
+        HttpResponse<String> purchase = send(post("/api/v1/products/" + productId + "/buy?amount=2", buyerToken, ""));
+        assertEquals(200, purchase.statusCode(), purchase.body());
+        JsonNode transaction = MAPPER.readTree(purchase.body()).path("data");
+        assertEquals(100, transaction.path("total").asInt());
+        assertEquals(20, transaction.path("change").asInt());
+
+        HttpResponse<String> overdraft = send(post("/api/v1/products/" + productId + "/buy?amount=1", buyerToken, ""));
+        assertEquals(400, overdraft.statusCode(), overdraft.body());
+
+        assertEquals(200, send(put("/api/v1/users/reset", buyerToken)).statusCode());
+        log.info("Native executable resident memory: {}", residentMemory());
+    }
+
+    private static String signUp(String username, String role) throws IOException, InterruptedException {
+        String credentials = String.format("{\"username\":\"%s\",\"password\":\"password\"}", username);
+        String user = String.format("{\"username\":\"%s\",\"password\":\"password\",\"role\":\"%s\"}", username, role);
+
+        assertEquals(201, send(post("/api/v1/users/", null, user)).statusCode());
+        HttpResponse<String> login = send(post("/api/auth/login", null, credentials));
+        assertEquals(200, login.statusCode(), login.body());
+        return MAPPER.readTree(login.body()).path("token").asText();
+    }
+
+    private static String residentMemory() throws IOException {
+        // only Linux exposes it without extra tooling
+        Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+        if (!Files.exists(status)) {
+            return "unknown";
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> line.substring("VmRSS:".length()).trim())
+                .findFirst()
+                .orElse("unknown");
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private static HttpRequest put(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Authorization", "Bearer " + token)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static HttpRequest post(String path, String token, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder.build();
+    }
+}